@@ -0,0 +1,97 @@
+package nl.saxion.dna.bench;
+
+import java.util.Random;
+
+import nl.saxion.dna.Trie;
+
+/**
+ * Compares Trie.containing with and without the infix index: the time to find
+ * the words holding a piece of text of 2, 3, 4 and 6 letters, the heap the
+ * index takes next to the trie, and what keeping it up to date adds to an
+ * insert. The pieces are taken from words of the vocabulary, so there is
+ * always at least one match. Without the index every word is looked at.
+ * Usage: InfixBenchmark [words] [queries]
+ *
+ * @author Idmon & Emre
+ */
+public class InfixBenchmark {
+
+	private static final int[] LENGTHS = { 2, 3, 4, 6 };
+
+	public static void main(String[] args) {
+		int words = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		String[] vocabulary = new SyntheticCorpus(words, 4, 14, 26, 42).getVocabulary();
+
+		build(vocabulary);							// Warm up the insert
+		long start = System.nanoTime();
+		Trie<Integer> plain = build(vocabulary);
+		long plainInsert = System.nanoTime() - start;
+
+		Trie<Integer> indexed = new Trie<Integer>();
+		indexed.enableInfixIndex();
+		start = System.nanoTime();
+		for(int i = 0; i < vocabulary.length; i++) {
+			indexed.insert(vocabulary[i], Integer.valueOf(i & 127));
+		}
+		long indexedInsert = System.nanoTime() - start;
+
+		long trieBytes = plain.memoryFootprint().getTotal();
+		long indexBytes = indexed.getInfixIndex().retainedBytes();
+		System.out.printf("%d words: trie %.1f MB, index %.1f MB (%.1f bytes/word, %d postings)%n",
+				plain.size(), trieBytes / 1048576.0, indexBytes / 1048576.0,
+				(double) indexBytes / plain.size(), indexed.getInfixIndex().getEntries());
+		System.out.printf("insert: %.0f ns/word without index, %.0f ns/word with index%n%n",
+				(double) plainInsert / vocabulary.length, (double) indexedInsert / vocabulary.length);
+
+		System.out.printf("%-8s %14s %14s %10s %12s%n", "length", "scan us", "index us", "speed-up", "matches");
+		Random random = new Random(7);
+		for(int round = 0; round < 2; round++) {
+			boolean report = round == 1;
+			for(int length : LENGTHS) {
+				String[] pieces = new String[queries];
+				for(int q = 0; q < queries; q++) {
+					String word;
+					do {
+						word = vocabulary[random.nextInt(vocabulary.length)];
+					} while(word.length() < length);
+					int offset = random.nextInt(word.length() - length + 1);
+					pieces[q] = word.substring(offset, offset + length);
+				}
+
+				long matches = 0;
+				start = System.nanoTime();
+				for(String piece : pieces) {
+					matches += plain.containing(piece).size();
+				}
+				long scan = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for(String piece : pieces) {
+					matches -= indexed.containing(piece).size();
+				}
+				long index = System.nanoTime() - start;
+				if(matches != 0) {
+					throw new IllegalStateException("Index and scan disagree");
+				}
+
+				if(report) {
+					long found = 0;
+					for(String piece : pieces) {
+						found += indexed.getInfixIndex().find(piece).size();
+					}
+					System.out.printf("%-8d %14.1f %14.1f %9.0fx %12.1f%n", length, scan / 1000.0 / queries,
+							index / 1000.0 / queries, (double) scan / index, (double) found / queries);
+				}
+			}
+		}
+	}
+
+	private static Trie<Integer> build(String[] vocabulary) {
+		Trie<Integer> trie = new Trie<Integer>();
+		for(int i = 0; i < vocabulary.length; i++) {
+			trie.insert(vocabulary[i], Integer.valueOf(i & 127));
+		}
+		return trie;
+	}
+}
@@ -0,0 +1,84 @@
+package nl.saxion.dna.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+import nl.saxion.dna.Data;
+import nl.saxion.dna.Trie;
+
+/**
+ * Measures how many bytes the lookup path of the Trie allocates per call.
+ * A hit or a miss of search, and the region search on a reused buffer,
+ * should all report 0 bytes per operation once the JIT has warmed up.
+ *
+ * @author Idmon & Emre
+ */
+public class LookupAllocationBenchmark {
+
+	private static final int WORDS = 100000;
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		Trie<Data> trie = new Trie<Data>();
+		ArrayList<String> hits = new ArrayList<String>();
+		ArrayList<String> misses = new ArrayList<String>();
+
+		// Build a dictionary of random words, the misses share their prefix with a hit
+		for(int i = 0; i < WORDS; i++) {
+			String word = randomWord(random);
+			trie.insert(word, new Data(i));
+			hits.add(word);
+			misses.add(word + "q" + randomWord(random));
+		}
+		String[] hitArray = hits.toArray(new String[hits.size()]);
+		String[] missArray = misses.toArray(new String[misses.size()]);
+		StringBuilder buffer = new StringBuilder(64);
+
+		for(int round = 0; round < ROUNDS; round++) {
+			boolean report = round == ROUNDS - 1;
+			measure("search (hit)", trie, hitArray, null, report);
+			measure("search (miss)", trie, missArray, null, report);
+			measure("search region (hit)", trie, hitArray, buffer, report);
+			measure("autocomplete (miss)", trie, missArray, null, report);
+		}
+	}
+
+	private static void measure(String name, Trie<Data> trie, String[] words, StringBuilder buffer, boolean report) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		int found = 0;
+
+		long bytes = threads.getThreadAllocatedBytes(thread);
+		long time = System.nanoTime();
+		for(String word : words) {
+			if(name.startsWith("autocomplete")) {
+				found += trie.autocomplete(word).size();
+			} else if(buffer != null) {
+				// Copy the word into the middle of a reused buffer and search that region
+				buffer.setLength(0);
+				buffer.append("##").append(word).append("##");
+				found += trie.search(buffer, 2, 2 + word.length()) != null ? 1 : 0;
+			} else {
+				found += trie.search(word) != null ? 1 : 0;
+			}
+		}
+		time = System.nanoTime() - time;
+		bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+		if(report) {
+			System.out.printf("%-22s %8.2f bytes/op %8.1f ns/op (%d found)%n",
+					name, (double) bytes / words.length, (double) time / words.length, found);
+		}
+	}
+
+	private static String randomWord(Random random) {
+		int length = 3 + random.nextInt(8);
+		char[] chars = new char[length];
+		for(int i = 0; i < length; i++) {
+			chars[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(chars);
+	}
+}
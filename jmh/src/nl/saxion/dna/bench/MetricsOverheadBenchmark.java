@@ -0,0 +1,81 @@
+package nl.saxion.dna.bench;
+
+import nl.saxion.dna.Data;
+import nl.saxion.dna.OperationMetrics;
+import nl.saxion.dna.Trie;
+import nl.saxion.dna.TrieMetrics;
+
+/**
+ * Measures what the metrics cost. The same searches and autocompletes are run
+ * on a Trie without metrics, which should be as fast as before there were
+ * any, on a Trie with metrics that do nothing, and on one with OperationMetrics.
+ * The rounds alternate so the JIT and the machine treat them the same.
+ *
+ * @author Idmon & Emre
+ */
+public class MetricsOverheadBenchmark {
+
+	private static final int WORDS = 100000;
+	private static final int QUERIES = 1000000;
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args) {
+		SyntheticCorpus corpus = new SyntheticCorpus(WORDS, 3, 10, 26, 42);
+		String[] queries = new String[QUERIES];
+		String[] prefixes = new String[QUERIES];
+		for(int i = 0; i < QUERIES; i++) {
+			queries[i] = corpus.next();
+			prefixes[i] = queries[i].substring(0, Math.min(4, queries[i].length()));
+		}
+
+		String[] names = { "no metrics", "no-op metrics", "OperationMetrics" };
+		Trie<Data>[] tries = build(corpus, 3);
+		tries[1].setMetrics(new TrieMetrics() {
+			public void record(Operation operation, CharSequence key, int start, int end, long nanos) {
+			}
+		});
+		OperationMetrics metrics = new OperationMetrics();
+		tries[2].setMetrics(metrics);
+
+		for(int round = 0; round < ROUNDS; round++) {
+			boolean report = round == ROUNDS - 1;
+			for(int t = 0; t < tries.length; t++) {
+				measure(names[t], tries[t], queries, prefixes, report);
+			}
+		}
+		System.out.println();
+		System.out.print(metrics);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Trie<Data>[] build(SyntheticCorpus corpus, int amount) {
+		Trie<Data>[] tries = new Trie[amount];
+		for(int t = 0; t < amount; t++) {
+			tries[t] = new Trie<Data>();
+			for(String word : corpus.getVocabulary()) {
+				tries[t].insert(word, new Data(0));
+			}
+		}
+		return tries;
+	}
+
+	private static void measure(String name, Trie<Data> trie, String[] queries, String[] prefixes, boolean report) {
+		int found = 0;
+		long time = System.nanoTime();
+		for(String query : queries) {
+			found += trie.search(query) != null ? 1 : 0;
+		}
+		long search = System.nanoTime() - time;
+
+		time = System.nanoTime();
+		for(int i = 0; i < prefixes.length; i += 100) {
+			found += trie.autocomplete(prefixes[i]).size();
+		}
+		long autocomplete = System.nanoTime() - time;
+
+		if(report) {
+			System.out.printf("%-18s search %8.1f ns/op   autocomplete %10.1f ns/op (%d found)%n",
+					name, (double) search / queries.length, (double) autocomplete / (prefixes.length / 100), found);
+		}
+	}
+}
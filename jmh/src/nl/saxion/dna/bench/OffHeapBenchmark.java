@@ -0,0 +1,137 @@
+package nl.saxion.dna.bench;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import nl.saxion.dna.OffHeapTrie;
+import nl.saxion.dna.Trie;
+
+/**
+ * Compares the on-heap Trie with the OffHeapTrie on the same vocabulary:
+ * the time to build it, the heap and direct memory it retains, and how long
+ * the garbage collector takes while it is alive. After building, a number of
+ * full collections is forced, which have to walk every object that is left.
+ * Values are small cached Integers, so only the structure itself is compared.
+ * Usage: OffHeapBenchmark [words] [collections]
+ *
+ * @author Idmon & Emre
+ */
+public class OffHeapBenchmark {
+
+	public static void main(String[] args) {
+		int words = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int collections = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		String[] vocabulary = new SyntheticCorpus(words, 4, 14, 26, 42).getVocabulary();
+
+		System.out.printf("%-12s %10s %12s %12s %10s %14s %14s%n",
+				"trie", "build ms", "heap MB", "direct MB", "gc count", "gc total ms", "full gc ms");
+		for(int round = 0; round < 2; round++) {
+			boolean report = round == 1;
+
+			Object[] holder = new Object[1];
+			Measurement heap = measure(collections, new Runnable() {
+				public void run() {
+					Trie<Integer> trie = new Trie<Integer>();
+					for(int i = 0; i < vocabulary.length; i++) {
+						trie.insert(vocabulary[i], Integer.valueOf(i & 127));
+					}
+					holder[0] = trie;
+				}
+			});
+			holder[0] = null;
+
+			Measurement offHeap = measure(collections, new Runnable() {
+				public void run() {
+					OffHeapTrie<Integer> trie = new OffHeapTrie<Integer>();
+					for(int i = 0; i < vocabulary.length; i++) {
+						trie.insert(vocabulary[i], Integer.valueOf(i & 127));
+					}
+					holder[0] = trie;
+				}
+			});
+			((OffHeapTrie<?>) holder[0]).close();
+			holder[0] = null;
+
+			if(report) {
+				heap.print("Trie");
+				offHeap.print("OffHeapTrie");
+			}
+		}
+	}
+
+	/**
+	 * Builds a trie, then forces full collections while it is still referenced
+	 */
+	private static Measurement measure(int collections, Runnable build) {
+		fullGc();
+		Measurement measurement = new Measurement();
+		long heapBefore = heapUsed();
+		long directBefore = directUsed();
+		long countBefore = gcCount();
+		long timeBefore = gcTime();
+
+		long start = System.nanoTime();
+		build.run();
+		measurement.build = System.nanoTime() - start;
+
+		long fullBefore = gcTime();
+		for(int i = 0; i < collections; i++) {
+			fullGc();
+		}
+		measurement.fullGc = (gcTime() - fullBefore) / (double) collections;
+		measurement.heap = heapUsed() - heapBefore;
+		measurement.direct = directUsed() - directBefore;
+		measurement.gcCount = gcCount() - countBefore;
+		measurement.gcTime = gcTime() - timeBefore;
+		return measurement;
+	}
+
+	private static void fullGc() {
+		System.gc();
+		System.gc();
+	}
+
+	private static long heapUsed() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static long directUsed() {
+		for(BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if(pool.getName().equals("direct")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcTime() {
+		long time = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, collector.getCollectionTime());
+		}
+		return time;
+	}
+
+	private static class Measurement {
+		private long build;							// Nanoseconds to build
+		private long heap;							// Heap bytes retained
+		private long direct;						// Direct bytes retained
+		private long gcCount;						// Collections during build and forced ones
+		private long gcTime;						// Milliseconds of those collections
+		private double fullGc;						// Milliseconds per forced full collection
+
+		private void print(String name) {
+			System.out.printf("%-12s %10.0f %12.1f %12.1f %10d %14d %14.1f%n", name, build / 1e6,
+					heap / 1048576.0, direct / 1048576.0, gcCount, gcTime, fullGc);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package nl.saxion.dna.bench;
+
+import java.io.File;
+
+import nl.saxion.dna.CorpusLoader;
+import nl.saxion.dna.Data;
+import nl.saxion.dna.ParallelCorpusLoader;
+import nl.saxion.dna.Trie;
+
+/**
+ * Measures how the ParallelCorpusLoader scales: the same corpus is loaded
+ * with the single-threaded CorpusLoader and then with 1, 2, 4, ... threads up
+ * to the amount of cores. Each load is repeated and the fastest one counts.
+ *
+ * Scaling over cores has not been measured yet: this was only run on a
+ * machine with one core, where it shows the gain of the sharded build on a
+ * single thread and nothing about the speed-up. That needs a run on a
+ * machine with several cores.
+ * Usage: ParallelLoadBenchmark [tokens] [vocabulary] [repeats]
+ *
+ * @author Idmon & Emre
+ */
+public class ParallelLoadBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int tokens = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+		int words = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+		int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		File corpus = File.createTempFile("corpus", ".txt");
+		corpus.deleteOnExit();
+		new SyntheticCorpus(words, 3, 12, 26, 42).write(corpus, tokens);
+		System.out.printf("corpus: %d tokens, %.1f MB, %d cores%n", tokens, corpus.length() / 1048576.0, cores);
+		if(cores == 1) {
+			System.out.println("only one core: this shows no scaling, only the single-threaded difference");
+		}
+
+		long serial = Long.MAX_VALUE;
+		for(int r = 0; r < repeats; r++) {
+			long start = System.nanoTime();
+			new CorpusLoader(new Trie<Data>()).load(corpus.getPath());
+			serial = Math.min(serial, System.nanoTime() - start);
+		}
+		System.out.printf("%-22s %10.1f ms%n", "CorpusLoader", serial / 1e6);
+
+		for(int threads = 1; threads <= cores; threads = threads < cores && threads * 2 > cores ? cores : threads * 2) {
+			long best = Long.MAX_VALUE;
+			for(int r = 0; r < repeats; r++) {
+				long start = System.nanoTime();
+				new ParallelCorpusLoader(new Trie<Data>(), threads).load(corpus.getPath());
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.printf("%-22s %10.1f ms %6.2fx%n", "parallel, " + threads + " threads", best / 1e6, (double) serial / best);
+			if(threads == cores) {
+				break;
+			}
+		}
+	}
+}
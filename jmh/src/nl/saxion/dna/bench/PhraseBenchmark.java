@@ -0,0 +1,110 @@
+package nl.saxion.dna.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import nl.saxion.dna.Data;
+import nl.saxion.dna.PhraseQuery;
+import nl.saxion.dna.Trie;
+
+/**
+ * Compares PhraseQuery with intersecting the position lists the plain way:
+ * getPosition() for both words and one pass over the two lists side by side.
+ * The pairs are a frequent and a frequent word, a rare and a frequent word,
+ * and two rare words, taken from a Zipf-like corpus. A rare word lets the
+ * cursor of the frequent one skip, the plain way reads every position.
+ * Usage: PhraseBenchmark [tokens] [queries]
+ *
+ * @author Idmon & Emre
+ */
+public class PhraseBenchmark {
+
+	private static final String[] PAIRS = { "frequent+frequent", "rare+frequent", "rare+rare" };
+
+	public static void main(String[] args) {
+		int tokens = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		SyntheticCorpus corpus = new SyntheticCorpus(50000, 3, 9, 26, 42);
+		Trie<Data> trie = new Trie<Data>();
+		for(int position = 1; position <= tokens; position++) {
+			String word = corpus.next();
+			if(!trie.addPosition(word, 0, word.length(), position)) {
+				trie.insert(word, new Data(position));
+			}
+		}
+		String[] vocabulary = corpus.getVocabulary();
+		System.out.printf("%d tokens, %d words%n%n", tokens, trie.size());
+		System.out.printf("%-18s %12s %12s %12s %10s %12s%n", "pair", "positions", "lists us", "phrase us", "speed-up", "near(5) us");
+
+		Random random = new Random(7);
+		for(int round = 0; round < 3; round++) {
+			boolean report = round == 2;
+			for(int pair = 0; pair < PAIRS.length; pair++) {
+				String[][] words = new String[queries][];
+				long positions = 0;
+				for(int q = 0; q < queries; q++) {
+					String first = pick(trie, vocabulary, random, pair == 0 ? 0 : 10000, pair == 0 ? 10 : vocabulary.length);
+					String second = pick(trie, vocabulary, random, pair == 2 ? 10000 : 0, pair == 2 ? vocabulary.length : 10);
+					words[q] = new String[] { first, second };
+					positions += trie.search(first).frequency() + trie.search(second).frequency();
+				}
+
+				long matches = 0;
+				long start = System.nanoTime();
+				for(String[] query : words) {
+					matches += intersect(trie.search(query[0]).getPosition(), trie.search(query[1]).getPosition());
+				}
+				long lists = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for(String[] query : words) {
+					matches -= PhraseQuery.phrase(trie, query).count();
+				}
+				long phrase = System.nanoTime() - start;
+				if(matches != 0) {
+					throw new IllegalStateException("Query and lists disagree");
+				}
+
+				start = System.nanoTime();
+				for(String[] query : words) {
+					matches += PhraseQuery.near(trie, 5, query).count();
+				}
+				long near = System.nanoTime() - start;
+
+				if(report) {
+					System.out.printf("%-18s %12.0f %12.1f %12.1f %9.1fx %12.1f%n", PAIRS[pair], (double) positions / queries,
+							lists / 1000.0 / queries, phrase / 1000.0 / queries, (double) lists / phrase, near / 1000.0 / queries);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A word from a range of the vocabulary that occurs in the corpus
+	 */
+	private static String pick(Trie<Data> trie, String[] vocabulary, Random random, int from, int to) {
+		String word;
+		do {
+			word = vocabulary[from + random.nextInt(to - from)];
+		} while(trie.search(word) == null);
+		return word;
+	}
+
+	/**
+	 * Counts the positions p in the first list where p + 1 is in the second
+	 */
+	private static int intersect(ArrayList<Integer> first, ArrayList<Integer> second) {
+		int matches = 0;
+		int j = 0;
+		for(int i = 0; i < first.size(); i++) {
+			int wanted = first.get(i) + 1;
+			while(j < second.size() && second.get(j) < wanted) {
+				j++;
+			}
+			if(j < second.size() && second.get(j) == wanted) {
+				matches++;
+			}
+		}
+		return matches;
+	}
+}
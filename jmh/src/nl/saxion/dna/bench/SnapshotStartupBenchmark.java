@@ -0,0 +1,60 @@
+package nl.saxion.dna.bench;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import nl.saxion.dna.CorpusLoader;
+import nl.saxion.dna.Data;
+import nl.saxion.dna.MappedTrie;
+import nl.saxion.dna.Trie;
+
+/**
+ * Compares the two ways to get a queryable trie at startup: rebuilding it
+ * from the text corpus, or opening a binary snapshot of it.
+ * Usage: SnapshotStartupBenchmark [tokens] [vocabulary]
+ *
+ * @author Idmon & Emre
+ */
+public class SnapshotStartupBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int tokens = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		int words = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+		File corpus = File.createTempFile("corpus", ".txt");
+		File snapshot = File.createTempFile("corpus", ".trie");
+		corpus.deleteOnExit();
+		snapshot.deleteOnExit();
+		Path path = snapshot.toPath();
+		SyntheticCorpus generator = new SyntheticCorpus(words, 3, 12, 26, 42);
+		generator.write(corpus, tokens);
+		String probe = generator.getVocabulary()[0];
+
+		// Rebuild from text
+		long start = System.nanoTime();
+		Trie<Data> trie = new Trie<Data>();
+		new CorpusLoader(trie).load(corpus.getPath());
+		int hits = trie.search(probe).frequency();
+		long rebuild = System.nanoTime() - start;
+
+		trie.save(path);
+		trie = null;
+
+		// Open the snapshot and answer the first queries
+		start = System.nanoTime();
+		MappedTrie mapped = Trie.open(path);
+		int mappedHits = mapped.frequency(probe);
+		int options = mapped.autocomplete(probe.substring(0, 2)).size();
+		long open = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		boolean valid = mapped.verify();
+		long verify = System.nanoTime() - start;
+
+		System.out.printf("corpus: %d tokens, %.1f MB text, %.1f MB snapshot%n",
+				tokens, corpus.length() / 1048576.0, snapshot.length() / 1048576.0);
+		System.out.printf("rebuild from text:    %8.1f ms ('%s' %dx)%n", rebuild / 1e6, probe, hits);
+		System.out.printf("open snapshot:        %8.1f ms ('%s' %dx, %d options)%n", open / 1e6, probe, mappedHits, options);
+		System.out.printf("verify checksum:      %8.1f ms (%s)%n", verify / 1e6, valid ? "ok" : "DAMAGED");
+	}
+}
@@ -0,0 +1,93 @@
+package nl.saxion.dna.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates the same corpus every time for a given seed: a vocabulary of
+ * random words, drawn with a Zipf-like skew so a few words are very frequent.
+ *
+ * @author Idmon & Emre
+ */
+public class SyntheticCorpus {
+
+	private String[] vocabulary;					// The distinct words
+	private double[] cumulative;					// Cumulative Zipf weights of the words
+	private Random random;
+
+	/**
+	 * Constructor for a corpus generator
+	 * @param words 	- Size of the vocabulary
+	 * @param minLength - Shortest word
+	 * @param maxLength - Longest word
+	 * @param alphabet 	- Amount of letters used, starting at 'a' (at most 26)
+	 * @param seed 		- Seed for the random generator
+	 */
+	public SyntheticCorpus(int words, int minLength, int maxLength, int alphabet, long seed) {
+		random = new Random(seed);
+		vocabulary = new String[words];
+		cumulative = new double[words];
+		double sum = 0;
+		for(int i = 0; i < words; i++) {
+			int length = minLength + random.nextInt(maxLength - minLength + 1);
+			char[] chars = new char[length];
+			for(int j = 0; j < length; j++) {
+				chars[j] = (char) ('a' + random.nextInt(alphabet));
+			}
+			vocabulary[i] = new String(chars);
+			sum += 1.0 / (i + 1);
+			cumulative[i] = sum;
+		}
+		for(int i = 0; i < words; i++) {
+			cumulative[i] /= sum;
+		}
+	}
+
+	/**
+	 * Gives back the distinct words (duplicates are possible with a small alphabet)
+	 * @return String[] - The vocabulary
+	 */
+	public String[] getVocabulary() {
+		return vocabulary;
+	}
+
+	/**
+	 * Draws the next word of the corpus
+	 * @return String - A word, frequent words more often
+	 */
+	public String next() {
+		double x = random.nextDouble();
+		int low = 0;
+		int high = cumulative.length - 1;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(cumulative[mid] < x) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return vocabulary[low];
+	}
+
+	/**
+	 * Writes a corpus file with the given amount of tokens
+	 * @param file 			- The file to write
+	 * @param tokens 		- Amount of words in the file
+	 * @throws IOException 	- When the file can't be written
+	 */
+	public void write(File file, int tokens) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16);
+		try {
+			for(int i = 0; i < tokens; i++) {
+				writer.write(next());
+				writer.write(i % 12 == 11 ? '\n' : ' ');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package nl.saxion.dna.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.saxion.dna.Data;
+import nl.saxion.dna.Trie;
+
+/**
+ * JMH benchmarks of the operations of the Trie on a synthetic corpus.
+ *
+ * Every benchmark is measured as throughput and as sampled time, which gives
+ * the latency percentiles. The jmh task adds the gc profiler for the bytes
+ * allocated per call and the collections. The corpus and the queries only
+ * depend on the parameters, so two versions of the Trie can be compared with
+ * the same ones, for example:
+ * 	gradle :jmh:jmh -Pjmh="TrieBenchmark -p words=1000000 -p prefix=3"
+ *
+ * Insert and delete work on a Copy of the trie that is built again before
+ * every iteration. Insert goes round the tokens, so after the first round it
+ * adds positions to words that are there. Delete goes round the queries, so
+ * after the first round it mostly misses.
+ *
+ * @author Idmon & Emre
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrieBenchmark {
+
+	@Param("100000")
+	private int words;								// Size of the vocabulary
+
+	@Param("500000")
+	private int tokens;								// Size of the corpus
+
+	@Param("3")
+	private int minLength;							// Shortest word
+
+	@Param("10")
+	private int maxLength;							// Longest word
+
+	@Param("26")
+	private int alphabet;							// Letters used, starting at 'a'
+
+	@Param("2")
+	private int prefix;								// Length of the autocomplete prefixes
+
+	@Param("0.8")
+	private double hitRatio;						// Part of the queries that is in the corpus
+
+	@Param("1")
+	private int edits;								// Typos allowed by fuzzySearch
+
+	@Param("42")
+	private long seed;
+
+	private static final int QUERIES = 1 << 16;		// Queries to go round, a power of two
+
+	private String[] corpus;						// The corpus, in order
+	private String[] queries;						// Words to look up, hits and misses
+	private String[] prefixes;						// Prefixes of the queries
+	private Trie<Data> trie;						// A trie with the whole corpus
+	private int next;								// Index of the next token or query
+	private PrintStream out;						// System.out, while the listings print to nothing
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SyntheticCorpus generator = new SyntheticCorpus(words, minLength, maxLength, alphabet, seed);
+		corpus = new String[tokens];
+		for(int i = 0; i < corpus.length; i++) {
+			corpus[i] = generator.next();
+		}
+		trie = build();
+
+		// Queries: hits are drawn like the corpus, misses are words that are not in it
+		HashSet<String> vocabulary = new HashSet<String>(Arrays.asList(generator.getVocabulary()));
+		SyntheticCorpus other = new SyntheticCorpus(words, minLength, maxLength, alphabet, seed + 1);
+		Random random = new Random(seed);
+		queries = new String[QUERIES];
+		prefixes = new String[QUERIES];
+		for(int i = 0; i < QUERIES; i++) {
+			String query;
+			if(random.nextDouble() < hitRatio) {
+				query = generator.next();
+			} else {
+				do {
+					query = other.next();
+				} while(vocabulary.contains(query));
+			}
+			queries[i] = query;
+			prefixes[i] = query.substring(0, Math.min(prefix, query.length()));
+		}
+
+		// The listings print every word, which is not what is measured
+		out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(out);
+	}
+
+	/**
+	 * A trie with the whole corpus for the benchmarks that change it
+	 */
+	@State(Scope.Thread)
+	public static class Copy {
+		private Trie<Data> trie;
+		private int next;							// Index of the next token or query
+
+		@Setup(Level.Iteration)
+		public void setUp(TrieBenchmark benchmark) {
+			trie = benchmark.build();
+			next = 0;
+		}
+	}
+
+	@Benchmark
+	public void insert(Copy copy) {
+		int i = copy.next++ % corpus.length;
+		copy.trie.insert(corpus[i], new Data(tokens + copy.next));
+	}
+
+	@Benchmark
+	public Data search() {
+		return trie.search(queries[next++ & (QUERIES - 1)]);
+	}
+
+	@Benchmark
+	public int autocomplete() {
+		return trie.autocomplete(prefixes[next++ & (QUERIES - 1)]).size();
+	}
+
+	@Benchmark
+	public int fuzzySearch() {
+		return trie.fuzzySearch(queries[next++ & (QUERIES - 1)], edits).size();
+	}
+
+	@Benchmark
+	public void delete(Copy copy) {
+		copy.trie.delete(queries[copy.next++ & (QUERIES - 1)]);
+	}
+
+	@Benchmark
+	public void alfabeticalOrder() {
+		trie.getAlfabeticalOrder();
+	}
+
+	@Benchmark
+	public void frequencyOrder() {
+		trie.getFrequencyOrder();
+	}
+
+	/**
+	 * Builds a trie with the whole corpus, one position per token
+	 */
+	private Trie<Data> build() {
+		Trie<Data> built = new Trie<Data>();
+		for(int i = 0; i < corpus.length; i++) {
+			if(!built.addPosition(corpus[i], 0, corpus[i].length(), i)) {
+				built.insert(corpus[i], new Data(i));
+			}
+		}
+		return built;
+	}
+}
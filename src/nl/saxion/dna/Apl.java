@@ -1,8 +1,5 @@
 package nl.saxion.dna;
 
-import java.io.File;
-import java.util.Scanner;
-
 /**
  * Assignment #3: Reduced Trie
  * @author Idmon & Emre
@@ -22,14 +19,10 @@ public class Apl {
 		int a = 10;
 		
 		// Read the txt file and insert all the words into the Trie
-		Scanner scanner = new Scanner(new File("words.txt"));
-		int number = 0;
-		while(scanner.hasNext()) {
-			String word = scanner.next();
-			Data data = new Data(++number);
-			trie.insert(word, data);
-		}
-		scanner.close();
+		CorpusLoader loader = new CorpusLoader(trie);
+		loader.load("words.txt");
+		System.out.printf("Loaded %d words (%d bytes) in %d ms: %.2f MB/s%n",
+				loader.getPosition(), loader.getBytes(), loader.getMillis(), loader.getThroughput());
 		
 		// This print generates a code for: http://graphviz-dev.appspot.com/
 		//trie.print();
@@ -0,0 +1,370 @@
+package nl.saxion.dna;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This ChildIndex<T> class keeps the children of a TrieNode<T> indexed
+ * on their starting character, so descending one level never has to
+ * compare Strings.
+ *
+ * Nodes with a small fan-out keep a sorted char array that is binary searched.
+ * Once the fan-out grows past DENSE_THRESHOLD and the characters lie close
+ * enough together, the index switches to a table that is addressed directly
+ * with (character - base). Both layouts hand out the children in character order.
+ *
+ * @author Idmon & Emre
+ * @param <T> Data Structure
+ */
+public class ChildIndex<T> implements Iterable<TrieNode<T>> {
+
+	private static final int DENSE_THRESHOLD = 8;	// Fan-out at which we try the dense table
+	private static final int SPARSE_THRESHOLD = 4;	// Fan-out at which a dense table falls back
+	private static final int MAX_DENSE_SPAN = 128;	// Widest character range a dense table may cover
+	private static final char[] NO_KEYS = new char[0];				// Shared by all empty indexes
+	private static final TrieNode<?>[] NO_NODES = new TrieNode<?>[0];	// Shared by all empty indexes
+
+	private char[] keys;							// Sorted starting characters (sparse layout)
+	private TrieNode<T>[] nodes;					// Children, parallel to keys or indexed by c - base
+	private char base;								// Lowest character of the dense table
+	private boolean dense;							// Which layout is in use
+	private int size;								// Amount of children
+
+	/**
+	 * Constructor for an empty index
+	 */
+	@SuppressWarnings("unchecked")
+	public ChildIndex() {
+		keys = NO_KEYS;
+		nodes = (TrieNode<T>[]) NO_NODES;
+	}
+
+	/**
+	 * Find the child with this starting character
+	 * @param c 		- Starting character you're looking for
+	 * @return child	- The child, or null when there is none
+	 */
+	public TrieNode<T> get(char c) {
+		if(dense) {
+			int slot = c - base;
+			return slot >= 0 && slot < nodes.length ? nodes[slot] : null;
+		}
+		int i = search(c);
+		return i >= 0 ? nodes[i] : null;
+	}
+
+	/**
+	 * Stores a child under its starting character, replacing an existing one
+	 * @param c 	- The starting character
+	 * @param node 	- The child node
+	 */
+	public void put(char c, TrieNode<T> node) {
+		if(dense) {
+			int slot = c - base;
+			if(slot >= 0 && slot < nodes.length) {
+				if(nodes[slot] == null) {
+					size++;
+				}
+				nodes[slot] = node;
+				return;
+			}
+
+			// Out of range, grow the table if it stays narrow enough
+			int low = Math.min(c, base);
+			int high = Math.max(c, base + nodes.length - 1);
+			if(high - low + 1 > MAX_DENSE_SPAN) {
+				toSparse();
+			} else {
+				TrieNode<T>[] table = newArray(high - low + 1);
+				System.arraycopy(nodes, 0, table, base - low, nodes.length);
+				table[c - low] = node;
+				nodes = table;
+				base = (char) low;
+				size++;
+				return;
+			}
+		}
+
+		int i = search(c);
+		if(i >= 0) {
+			nodes[i] = node;
+			return;
+		}
+
+		// Insert at the right spot to keep the characters sorted
+		i = -(i + 1);
+		if(size == keys.length) {
+			int capacity = Math.max(2, size * 2);
+			keys = copyOf(keys, capacity);
+			nodes = copyOf(nodes, capacity);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(nodes, i, nodes, i + 1, size - i);
+		keys[i] = c;
+		nodes[i] = node;
+		size++;
+
+		if(size > DENSE_THRESHOLD) {
+			toDense();
+		}
+	}
+
+	/**
+	 * Removes the child with this starting character
+	 * @param c 		- The starting character
+	 * @return child	- The removed child, or null when there was none
+	 */
+	public TrieNode<T> remove(char c) {
+		if(dense) {
+			int slot = c - base;
+			if(slot < 0 || slot >= nodes.length || nodes[slot] == null) {
+				return null;
+			}
+			TrieNode<T> node = nodes[slot];
+			nodes[slot] = null;
+			size--;
+			if(size <= SPARSE_THRESHOLD) {
+				toSparse();
+			}
+			return node;
+		}
+
+		int i = search(c);
+		if(i < 0) {
+			return null;
+		}
+		TrieNode<T> node = nodes[i];
+		System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+		System.arraycopy(nodes, i + 1, nodes, i, size - i - 1);
+		size--;
+		nodes[size] = null;
+		return node;
+	}
+
+	/**
+	 * Gives back the amount of children
+	 * @return int - The fan-out of the node
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gives back the child with the lowest starting character
+	 * @return child - The first child, or null when there are none
+	 */
+	public TrieNode<T> first() {
+		return higher((char) 0, true);
+	}
+
+	/**
+	 * Gives back the child with the highest starting character
+	 * @return child - The last child, or null when there are none
+	 */
+	public TrieNode<T> last() {
+		return lower(Character.MAX_VALUE, true);
+	}
+
+	/**
+	 * Gives back the first child whose starting character comes after c
+	 * @param c 		- The character to start from
+	 * @param inclusive - Whether a child starting with c itself counts
+	 * @return child	- The next child, or null when there is none
+	 */
+	public TrieNode<T> higher(char c, boolean inclusive) {
+		if(dense) {
+			int slot = Math.max(0, c - base + (inclusive ? 0 : 1));
+			for(; slot < nodes.length; slot++) {
+				if(nodes[slot] != null) {
+					return nodes[slot];
+				}
+			}
+			return null;
+		}
+		int i = search(c);
+		i = i >= 0 ? (inclusive ? i : i + 1) : -(i + 1);
+		return i < size ? nodes[i] : null;
+	}
+
+	/**
+	 * Gives back the last child whose starting character comes before c
+	 * @param c 		- The character to start from
+	 * @param inclusive - Whether a child starting with c itself counts
+	 * @return child	- The previous child, or null when there is none
+	 */
+	public TrieNode<T> lower(char c, boolean inclusive) {
+		if(dense) {
+			int slot = Math.min(nodes.length - 1, c - base - (inclusive ? 0 : 1));
+			for(; slot >= 0; slot--) {
+				if(nodes[slot] != null) {
+					return nodes[slot];
+				}
+			}
+			return null;
+		}
+		int i = search(c);
+		i = i >= 0 ? (inclusive ? i : i - 1) : -(i + 1) - 1;
+		return i >= 0 ? nodes[i] : null;
+	}
+
+	/**
+	 * Walks the children in character order
+	 */
+	@Override
+	public Iterator<TrieNode<T>> iterator() {
+		return new Iterator<TrieNode<T>>() {
+			private int slot = advance(0);
+
+			private int advance(int from) {
+				while(from < limit() && nodes[from] == null) {
+					from++;
+				}
+				return from;
+			}
+
+			private int limit() {
+				return dense ? nodes.length : size;
+			}
+
+			public boolean hasNext() {
+				return slot < limit();
+			}
+
+			public TrieNode<T> next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				TrieNode<T> node = nodes[slot];
+				slot = advance(slot + 1);
+				return node;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Binary search over the sorted characters (sparse layout only)
+	 * @return index - Index of c, or (-(insertion point) - 1)
+	 */
+	private int search(char c) {
+		int low = 0;
+		int high = size - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			char key = keys[mid];
+			if(key < c) {
+				low = mid + 1;
+			} else if(key > c) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Switches to the directly addressed table when the characters are close enough together
+	 */
+	private void toDense() {
+		int span = keys[size - 1] - keys[0] + 1;
+		if(span > MAX_DENSE_SPAN) {
+			return;
+		}
+		TrieNode<T>[] table = newArray(span);
+		base = keys[0];
+		for(int i = 0; i < size; i++) {
+			table[keys[i] - base] = nodes[i];
+		}
+		nodes = table;
+		keys = NO_KEYS;
+		dense = true;
+	}
+
+	/**
+	 * Switches back to the sorted arrays
+	 */
+	private void toSparse() {
+		char[] sortedKeys = new char[Math.max(2, size)];
+		TrieNode<T>[] sortedNodes = newArray(sortedKeys.length);
+		int n = 0;
+		for(int slot = 0; slot < nodes.length; slot++) {
+			if(nodes[slot] != null) {
+				sortedKeys[n] = (char) (base + slot);
+				sortedNodes[n] = nodes[slot];
+				n++;
+			}
+		}
+		keys = sortedKeys;
+		nodes = sortedNodes;
+		dense = false;
+	}
+
+	/**
+	 * Gives the arrays back the room they don't use: a sparse index keeps
+	 * exactly its children, a dense table only the range from the lowest
+	 * to the highest character. An empty index shares its arrays.
+	 */
+	@SuppressWarnings("unchecked")
+	void trim() {
+		if(size == 0) {
+			keys = NO_KEYS;
+			nodes = (TrieNode<T>[]) NO_NODES;
+			dense = false;
+		} else if(dense) {
+			int low = 0;
+			int high = nodes.length - 1;
+			while(nodes[low] == null) {
+				low++;
+			}
+			while(nodes[high] == null) {
+				high--;
+			}
+			if(low > 0 || high < nodes.length - 1) {
+				TrieNode<T>[] table = newArray(high - low + 1);
+				System.arraycopy(nodes, low, table, 0, table.length);
+				nodes = table;
+				base = (char) (base + low);
+			}
+		} else if(keys.length > size) {
+			keys = copyOf(keys, size);
+			nodes = copyOf(nodes, size);
+		}
+	}
+
+	/**
+	 * Estimates the heap this index takes: the object and its arrays.
+	 * Shared empty arrays are not counted.
+	 * @return long - The bytes
+	 */
+	long retainedBytes() {
+		long bytes = MemoryFootprint.object(4 + 4 + 2 + 1 + 4);
+		if(keys != NO_KEYS) {
+			bytes += MemoryFootprint.array(2, keys.length);
+		}
+		if(nodes != NO_NODES) {
+			bytes += MemoryFootprint.array(MemoryFootprint.REFERENCE, nodes.length);
+		}
+		return bytes;
+	}
+
+	private static char[] copyOf(char[] array, int length) {
+		char[] copy = new char[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private TrieNode<T>[] copyOf(TrieNode<T>[] array, int length) {
+		TrieNode<T>[] copy = newArray(length);
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private TrieNode<T>[] newArray(int length) {
+		return (TrieNode<T>[]) new TrieNode[length];
+	}
+}
@@ -0,0 +1,224 @@
+package nl.saxion.dna;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks all the words under a node in alfabetical order, one at a time.
+ *
+ * The walk keeps its own stack instead of using recursion and all words are
+ * built in one shared buffer, so a String is only created for a word that is
+ * actually asked for with next(). The walk can start after a given word
+ * (a cursor, for example the last word of the previous page) or at it, and can
+ * stop at a word or after a limit. The same walk is available as a Spliterator
+ * or a sequential Stream. The trie should not be changed while iterating.
+ *
+ * @author Idmon & Emre
+ * @param <T> Data structure
+ */
+public class CompletionIterator<T> implements Iterator<String> {
+
+	private TrieNode<T>[] nodes;					// Stack of nodes being walked
+	private char[] next;							// Per node: character of the next child to visit
+	private boolean[] inclusive;					// Per node: may that child start with 'next' itself
+	private int[] lengths;							// Per node: length of the buffer before its label
+	private int depth;								// Amount of nodes on the stack
+	private StringBuilder buffer;					// The word of the node on top of the stack
+	private boolean ready;							// Is the top of the stack the next word
+	private int remaining;							// Words that may still be returned
+	private String to;								// The walk stops at this word, null to go on to the end
+	private boolean toInclusive;					// May 'to' itself be returned
+
+	/**
+	 * Constructor for a walk over all words under a node
+	 * @param node 	- The node to start from
+	 * @param after - Only words after this one are returned, null to start at the beginning
+	 * @param limit - The maximum amount of words to return
+	 */
+	public CompletionIterator(TrieNode<T> node, String after, int limit) {
+		this(node, after, false, null, false, limit);
+	}
+
+	/**
+	 * Constructor for a walk over the words under a node between two words
+	 * @param node 			- The node to start from
+	 * @param from 			- The walk starts at this word, null to start at the beginning
+	 * @param fromInclusive - May 'from' itself be returned
+	 * @param to 			- The walk stops at this word, null to go on to the end
+	 * @param toInclusive 	- May 'to' itself be returned
+	 * @param limit 		- The maximum amount of words to return
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public CompletionIterator(TrieNode<T> node, String from, boolean fromInclusive, String to, boolean toInclusive, int limit) {
+		this.to = to;
+		this.toInclusive = toInclusive;
+		nodes = (TrieNode<T>[]) new TrieNode[16];
+		next = new char[16];
+		inclusive = new boolean[16];
+		lengths = new int[16];
+		buffer = new StringBuilder(node.toString());
+		remaining = limit;
+		push(node, 0);
+		ready = node.isWord();
+
+		if(from != null) {
+			String word = buffer.toString();
+			if(from.startsWith(word)) {
+				ready = false;
+				seek(from);
+				if(buffer.length() == from.length()) {
+					// The walk is at the cursor itself
+					ready = fromInclusive && nodes[depth - 1].isWord();
+				}
+			} else if(from.compareTo(word) > 0) {
+				// Every word under the node comes before the cursor
+				ready = false;
+				depth = 0;
+			}
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if(remaining <= 0) {
+			return false;
+		}
+		if(!ready) {
+			advance();
+		}
+		if(ready && to != null) {
+			int compare = CharSequence.compare(buffer, to);
+			if(compare > 0 || (compare == 0 && !toInclusive)) {
+				// The words only get later from here
+				ready = false;
+				remaining = 0;
+			}
+		}
+		return ready;
+	}
+
+	@Override
+	public String next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		ready = false;
+		remaining--;
+		return buffer.toString();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Gives back the words that are left as a Spliterator. It uses this
+	 * iterator, so only one of the two should be used afterwards.
+	 * @return Spliterator - The words, sorted and distinct, size unknown
+	 */
+	public Spliterator<String> spliterator() {
+		return Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL);
+	}
+
+	/**
+	 * Gives back the words that are left as a sequential Stream, like spliterator()
+	 * @return Stream - The words in alfabetical order, created only when they are used
+	 */
+	public Stream<String> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Moves to the next node that is a word. A node is a word before any of
+	 * its children, which come in the order of their starting character.
+	 */
+	private void advance() {
+		while(depth > 0) {
+			int top = depth - 1;
+			TrieNode<T> node = nodes[top];
+			TrieNode<T> child = node.getChildIndex().higher(next[top], inclusive[top]);
+			if(child == null) {
+				// All children have been visited, go back up
+				buffer.setLength(lengths[top]);
+				nodes[top] = null;
+				depth--;
+				continue;
+			}
+			next[top] = child.getStartCharacter();
+			inclusive[top] = false;
+			int length = buffer.length();
+			buffer.append(child.getStartCharacter()).append(child.getCharacters());
+			push(child, length);
+			if(child.isWord()) {
+				ready = true;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Places the walk right after a word: the nodes on its path are put on the
+	 * stack and only children that come after the word are left to visit
+	 * @param after - The cursor, which starts with the word of the first node
+	 */
+	private void seek(String after) {
+		while(true) {
+			int top = depth - 1;
+			int i = buffer.length();
+			if(i == after.length()) {
+				// The node is the cursor itself, all of its children come after it
+				return;
+			}
+
+			char c = after.charAt(i);
+			TrieNode<T> child = nodes[top].getChildIndex().get(c);
+			next[top] = c;
+			if(child == null) {
+				inclusive[top] = true;
+				return;
+			}
+
+			// Compare the rest of the label with the cursor
+			String characters = child.getCharacters();
+			int j = 0;
+			while(j < characters.length() && i + 1 + j < after.length() && characters.charAt(j) == after.charAt(i + 1 + j)) {
+				j++;
+			}
+			if(j < characters.length()) {
+				// The child either runs past the end of the cursor or differs from it
+				boolean later = i + 1 + j == after.length() || characters.charAt(j) > after.charAt(i + 1 + j);
+				inclusive[top] = later;
+				return;
+			}
+
+			// The whole label is part of the cursor, continue in the child
+			inclusive[top] = false;
+			buffer.append(c).append(characters);
+			push(child, i);
+		}
+	}
+
+	/**
+	 * Puts a node on the stack, with the length the buffer had before its label
+	 */
+	private void push(TrieNode<T> node, int length) {
+		if(depth == nodes.length) {
+			nodes = Arrays.copyOf(nodes, depth * 2);
+			next = Arrays.copyOf(next, depth * 2);
+			inclusive = Arrays.copyOf(inclusive, depth * 2);
+			lengths = Arrays.copyOf(lengths, depth * 2);
+		}
+		nodes[depth] = node;
+		next[depth] = 0;
+		inclusive[depth] = true;
+		lengths[depth] = length;
+		depth++;
+	}
+}
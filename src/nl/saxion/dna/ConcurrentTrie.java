@@ -0,0 +1,426 @@
+package nl.saxion.dna;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread-safe variant of the reduced Trie.
+ *
+ * Every node is a Slot that points to an immutable Branch holding the data
+ * and the edges of that node. A change to a node builds a new Branch and
+ * swaps it in with compare-and-set, so searches never take a lock and writers
+ * working in different parts of the trie don't get in each others way.
+ * Splitting an edge is one swap on the parent, because the child Slot is
+ * shared by the old and the new edge.
+ *
+ * When a delete leaves a node without data and with at most one child, the
+ * node is frozen before it is removed or merged into the edge of its parent.
+ * A frozen node can't be changed anymore; a writer that runs into one first
+ * helps to clean it up and then starts over.
+ *
+ * Like the Trie, only words made of the letters a-z and A-Z are stored, in
+ * lowercase. Data-objects are never changed after they have been stored:
+ * inserting an existing word stores a new Data-object with both positions.
+ * When the new one has a single position, Data.withPosition appends it
+ * without copying the positions that are there.
+ *
+ * @author Idmon & Emre
+ * @param <T> Data structure
+ */
+public class ConcurrentTrie<T> {
+
+	private final Slot<T> root;					// The root-node, never frozen
+
+	public ConcurrentTrie() {
+		root = new Slot<T>(new Branch<T>(null, new String[0], ConcurrentTrie.<T>slots(0), false));
+	}
+
+	/**
+	 * Adds a new word to the Trie
+	 * @param word 	- The word that needs to be added to the trie
+	 * @param data 	- The Data-object that needs to be stored
+	 */
+	public void insert(String word, T data) {
+		assert word != null	: "Word is null";
+		assert word != ""	: "Word is empty";
+		assert data != null	: "Data object is null";
+
+		if(word == null || word.isEmpty() || data == null || !Trie.isLetters(word)) {
+			return;
+		}
+		String key = Trie.hasUpperCase(word) ? word.toLowerCase() : word;
+
+		restart:
+		while(true) {
+			Slot<T> parent = null;
+			Slot<T> slot = root;
+			int i = 0;
+			while(true) {
+				Branch<T> branch = slot.get();
+				if(branch.frozen) {
+					clean(parent, slot);
+					continue restart;
+				}
+
+				// The word ends in this node
+				if(i == key.length()) {
+					if(slot.compareAndSet(branch, branch.withData(combine(branch.data, data)))) {
+						return;
+					}
+					continue;
+				}
+
+				// No edge starts with the next character, add a new leaf
+				int k = branch.indexOf(key.charAt(i));
+				if(k < 0) {
+					Slot<T> leaf = new Slot<T>(leaf(data));
+					if(slot.compareAndSet(branch, branch.withEdge(key.substring(i), leaf))) {
+						return;
+					}
+					continue;
+				}
+
+				// The whole edge matches, descend
+				String label = branch.labels[k];
+				int common = commonPrefix(label, key, i);
+				if(common == label.length()) {
+					parent = slot;
+					slot = branch.slots[k];
+					i += common;
+					continue;
+				}
+
+				// The word leaves the edge halfway, split it with a new node in between
+				Branch<T> middle;
+				Slot<T> rest = branch.slots[k];
+				if(i + common == key.length()) {
+					middle = new Branch<T>(data, new String[] { label.substring(common) }, ConcurrentTrie.<T>slots(rest), false);
+				} else {
+					middle = new Branch<T>(null, new String[0], ConcurrentTrie.<T>slots(0), false)
+							.withEdge(label.substring(common), rest)
+							.withEdge(key.substring(i + common), new Slot<T>(leaf(data)));
+				}
+				if(slot.compareAndSet(branch, branch.withEdge(k, label.substring(0, common), new Slot<T>(middle)))) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Search the Trie for a specific word
+	 * @param word
+	 * @return Data 	- The Data-object stored in the word
+	 */
+	public T search(CharSequence word) {
+		assert word != null	: "Prefix is null";
+		assert word.length() != 0	: "prefix is empty";
+
+		Slot<T> slot = locate(word, false);
+		return slot == null ? null : slot.get().data;
+	}
+
+	/**
+	 * Deletes a word from the Trie
+	 * @param word
+	 * @return boolean - True if the word was in the trie
+	 */
+	public boolean delete(CharSequence word) {
+		assert word != null	: "Prefix is null";
+		assert word.length() != 0	: "prefix is empty";
+
+		restart:
+		while(true) {
+			// Remember the path, merging may continue upwards
+			ArrayList<Slot<T>> path = new ArrayList<Slot<T>>();
+			Slot<T> slot = root;
+			int i = 0;
+			while(i < word.length()) {
+				Branch<T> branch = slot.get();
+				if(branch.frozen) {
+					clean(path.get(path.size() - 1), slot);
+					continue restart;
+				}
+				int k = branch.indexOf(word.charAt(i));
+				if(k < 0 || !matches(branch.labels[k], word, i)) {
+					return false;
+				}
+				path.add(slot);
+				i += branch.labels[k].length();
+				slot = branch.slots[k];
+			}
+
+			while(true) {
+				Branch<T> branch = slot.get();
+				if(branch.frozen) {
+					clean(path.get(path.size() - 1), slot);
+					continue restart;
+				}
+				if(branch.data == null) {
+					return false;
+				}
+
+				// A node without data and with one child or less is frozen, it has to go
+				boolean freeze = slot != root && branch.slots.length <= 1;
+				if(slot.compareAndSet(branch, new Branch<T>(null, branch.labels, branch.slots, freeze))) {
+					break;
+				}
+			}
+
+			// Clean up the frozen nodes upwards, as long as that works out
+			for(int level = path.size() - 1; level >= 0 && slot.get().frozen; level--) {
+				Slot<T> parent = path.get(level);
+				if(!clean(parent, slot)) {
+					break;
+				}
+				Branch<T> branch = parent.get();
+				if(parent == root || branch.frozen || branch.data != null || branch.slots.length > 1
+						|| !parent.compareAndSet(branch, new Branch<T>(null, branch.labels, branch.slots, true))) {
+					break;
+				}
+				slot = parent;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Builds a list of words with the given Prefix.
+	 * A word that is in the trie during the whole call is always in the list.
+	 * @param prefix
+	 * @return List  - A list of all the options
+	 */
+	public ArrayList<String> autocomplete(CharSequence prefix) {
+		ArrayList<String> words = new ArrayList<String>();
+		StringBuilder builder = new StringBuilder(prefix);
+
+		// Find the node, a prefix may end halfway an edge
+		Slot<T> slot = root;
+		int i = 0;
+		while(i < prefix.length()) {
+			Branch<T> branch = slot.get();
+			int k = branch.indexOf(prefix.charAt(i));
+			if(k < 0) {
+				return words;
+			}
+			String label = branch.labels[k];
+			int common = commonPrefix(label, prefix, i);
+			if(i + common < prefix.length() && common < label.length()) {
+				return words;
+			}
+			builder.append(label, Math.min(label.length(), prefix.length() - i), label.length());
+			i += label.length();
+			slot = branch.slots[k];
+		}
+		collect(slot.get(), builder, words);
+		return words;
+	}
+
+	/**
+	 * Adds all the words under a node, in alfabetical order
+	 */
+	private void collect(Branch<T> branch, StringBuilder builder, ArrayList<String> words) {
+		if(branch.data != null) {
+			words.add(builder.toString());
+		}
+		for(int k = 0; k < branch.slots.length; k++) {
+			int length = builder.length();
+			builder.append(branch.labels[k]);
+			collect(branch.slots[k].get(), builder, words);
+			builder.setLength(length);
+		}
+	}
+
+	/**
+	 * Walks down to the node spelling the word
+	 */
+	private Slot<T> locate(CharSequence word, boolean prefix) {
+		Slot<T> slot = root;
+		int i = 0;
+		while(i < word.length()) {
+			Branch<T> branch = slot.get();
+			int k = branch.indexOf(word.charAt(i));
+			if(k < 0 || !matches(branch.labels[k], word, i)) {
+				return null;
+			}
+			i += branch.labels[k].length();
+			slot = branch.slots[k];
+		}
+		return slot;
+	}
+
+	/**
+	 * Replaces the edge of the parent to a frozen node: a node without children
+	 * is dropped, a node with one child is merged into the edge
+	 * @return boolean - True if the frozen node is no longer a child of the parent
+	 */
+	private boolean clean(Slot<T> parent, Slot<T> frozen) {
+		Branch<T> branch = parent.get();
+		if(branch.frozen) {
+			return false;
+		}
+		int k = branch.indexOf(frozen);
+		if(k < 0) {
+			return true;
+		}
+		Branch<T> contents = frozen.get();
+		Branch<T> replacement;
+		if(contents.slots.length == 0) {
+			replacement = branch.withoutEdge(k);
+		} else {
+			replacement = branch.withEdge(k, branch.labels[k] + contents.labels[0], contents.slots[0]);
+		}
+		return parent.compareAndSet(branch, replacement);
+	}
+
+	/**
+	 * Combines the data of an existing word with new data, the same way TrieNode does
+	 */
+	@SuppressWarnings("unchecked")
+	private T combine(T existing, T data) {
+		if(existing instanceof Data && data instanceof Data) {
+			Data added = (Data) data;
+			if(added.frequency() == 1) {
+				return (T) ((Data) existing).withPosition(added.cursor().next());
+			}
+			return (T) Data.merge((Data) existing, added);
+		}
+		return data;
+	}
+
+	private Branch<T> leaf(T data) {
+		return new Branch<T>(data, new String[0], ConcurrentTrie.<T>slots(0), false);
+	}
+
+	/**
+	 * Counts the characters the label has in common with the key from index i
+	 */
+	private static int commonPrefix(String label, CharSequence key, int i) {
+		int length = Math.min(label.length(), key.length() - i);
+		int common = 0;
+		while(common < length && label.charAt(common) == key.charAt(i + common)) {
+			common++;
+		}
+		return common;
+	}
+
+	/**
+	 * Checks if the whole label matches the key from index i
+	 */
+	private static boolean matches(String label, CharSequence key, int i) {
+		return label.length() <= key.length() - i && commonPrefix(label, key, i) == label.length();
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T> Slot<T>[] slots(int length) {
+		return (Slot<T>[]) new Slot[length];
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T> Slot<T>[] slots(Slot<T> slot) {
+		Slot<T>[] slots = (Slot<T>[]) new Slot[1];
+		slots[0] = slot;
+		return slots;
+	}
+
+	/**
+	 * A node of the trie, the only mutable part is its reference to the current Branch
+	 */
+	@SuppressWarnings("serial")
+	private static final class Slot<T> extends AtomicReference<Branch<T>> {
+		Slot(Branch<T> branch) {
+			super(branch);
+		}
+	}
+
+	/**
+	 * The contents of a node at one moment: its data and its edges sorted
+	 * on their starting character. A Branch is never changed.
+	 */
+	private static final class Branch<T> {
+		final T data;							// The data, null if it is no word
+		final String[] labels;					// Characters on the edge to each child
+		final Slot<T>[] slots;					// The children
+		final boolean frozen;					// Is the node about to be removed
+
+		Branch(T data, String[] labels, Slot<T>[] slots, boolean frozen) {
+			this.data = data;
+			this.labels = labels;
+			this.slots = slots;
+			this.frozen = frozen;
+		}
+
+		/**
+		 * Binary search on the starting characters of the edges
+		 */
+		int indexOf(char c) {
+			int low = 0;
+			int high = labels.length - 1;
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				char key = labels[mid].charAt(0);
+				if(key < c) {
+					low = mid + 1;
+				} else if(key > c) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
+		int indexOf(Slot<T> slot) {
+			for(int k = 0; k < slots.length; k++) {
+				if(slots[k] == slot) {
+					return k;
+				}
+			}
+			return -1;
+		}
+
+		Branch<T> withData(T newData) {
+			return new Branch<T>(newData, labels, slots, false);
+		}
+
+		/**
+		 * Copy with a new edge at the right spot
+		 */
+		Branch<T> withEdge(String label, Slot<T> slot) {
+			int k = -(indexOf(label.charAt(0)) + 1);
+			String[] newLabels = new String[labels.length + 1];
+			Slot<T>[] newSlots = slots(labels.length + 1);
+			System.arraycopy(labels, 0, newLabels, 0, k);
+			System.arraycopy(slots, 0, newSlots, 0, k);
+			newLabels[k] = label;
+			newSlots[k] = slot;
+			System.arraycopy(labels, k, newLabels, k + 1, labels.length - k);
+			System.arraycopy(slots, k, newSlots, k + 1, labels.length - k);
+			return new Branch<T>(data, newLabels, newSlots, false);
+		}
+
+		/**
+		 * Copy with edge k replaced, the label keeps its starting character
+		 */
+		Branch<T> withEdge(int k, String label, Slot<T> slot) {
+			String[] newLabels = labels.clone();
+			Slot<T>[] newSlots = slots.clone();
+			newLabels[k] = label;
+			newSlots[k] = slot;
+			return new Branch<T>(data, newLabels, newSlots, false);
+		}
+
+		/**
+		 * Copy without edge k
+		 */
+		Branch<T> withoutEdge(int k) {
+			String[] newLabels = new String[labels.length - 1];
+			Slot<T>[] newSlots = slots(labels.length - 1);
+			System.arraycopy(labels, 0, newLabels, 0, k);
+			System.arraycopy(slots, 0, newSlots, 0, k);
+			System.arraycopy(labels, k + 1, newLabels, k, labels.length - k - 1);
+			System.arraycopy(slots, k + 1, newSlots, k, labels.length - k - 1);
+			return new Branch<T>(data, newLabels, newSlots, false);
+		}
+	}
+}
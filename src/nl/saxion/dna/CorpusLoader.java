@@ -0,0 +1,145 @@
+package nl.saxion.dna;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Loads a corpus into a Trie<Data> straight from a memory-mapped file.
+ * Words are split on whitespace like java.util.Scanner does, every token
+ * gets the next position (the first token is position 1) and only tokens
+ * consisting of the letters a-z and A-Z are inserted, in lowercase.
+ *
+ * Tokens are collected in a reused buffer and looked up in place, so a word
+ * that is already in the trie does not create a String. Files bigger than
+ * one mapping are mapped window by window.
+ *
+ * @author Idmon & Emre
+ */
+public class CorpusLoader {
+
+	private static final long WINDOW = 1L << 28;	// Bytes mapped at once (256 MB)
+
+	private Trie<Data> trie;						// The trie the words are added to
+	private StringBuilder token;					// The token that is being read
+	private boolean letters;						// Does the token only contain letters
+	private int position;							// Position of the last token
+	private long bytes;								// Amount of bytes read
+	private long nanos;								// Time spent reading
+
+	/**
+	 * Constructor for a loader that adds to the given trie
+	 * @param trie - The trie the words will be inserted into
+	 */
+	public CorpusLoader(Trie<Data> trie) {
+		this.trie = trie;
+		this.token = new StringBuilder(32);
+		this.letters = true;
+	}
+
+	/**
+	 * Reads all the words of a file into the trie.
+	 * Positions continue where a previous load ended.
+	 * @param fileName 		- The file to read
+	 * @throws IOException 	- When the file can't be read
+	 */
+	public void load(String fileName) throws IOException {
+		long start = System.nanoTime();
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			for(long offset = 0; offset < size; offset += WINDOW) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, size - offset));
+				read(buffer);
+			}
+			// The last token may run until the end of the file
+			endToken();
+			bytes += size;
+		} finally {
+			file.close();
+		}
+		nanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * Splits the bytes of one mapped window into tokens. A token that runs
+	 * over the end of the window is continued in the next one.
+	 */
+	private void read(MappedByteBuffer buffer) {
+		int limit = buffer.limit();
+		for(int i = 0; i < limit; i++) {
+			int b = buffer.get(i);
+			if(isWhitespace(b)) {
+				endToken();
+			} else if(b >= 'a' && b <= 'z') {
+				token.append((char) b);
+			} else if(b >= 'A' && b <= 'Z') {
+				token.append((char) (b + ('a' - 'A')));
+			} else {
+				// Anything else makes the token unusable, but it still counts
+				token.append('?');
+				letters = false;
+			}
+		}
+	}
+
+	/**
+	 * Finishes the current token: it gets the next position and is added
+	 * to the trie if it only contained letters
+	 */
+	private void endToken() {
+		if(token.length() == 0) {
+			return;
+		}
+		position++;
+		if(letters) {
+			// Look the word up in place, only a new word needs a String
+			if(!trie.addPosition(token, 0, token.length(), position)) {
+				trie.insert(token.toString(), new Data(position));
+			}
+		}
+		token.setLength(0);
+		letters = true;
+	}
+
+	/**
+	 * The ASCII characters java.util.Scanner treats as whitespace
+	 */
+	static boolean isWhitespace(int b) {
+		return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+	}
+
+	/**
+	 * Gives back the position of the last token that has been read
+	 * @return int - The amount of tokens read so far
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Gives back the amount of bytes read
+	 * @return long - Bytes read over all loads
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gives back the time the loads took
+	 * @return long - Milliseconds spent over all loads
+	 */
+	public long getMillis() {
+		return nanos / 1000000;
+	}
+
+	/**
+	 * Gives back how fast the input has been read
+	 * @return double - Throughput in megabytes per second
+	 */
+	public double getThroughput() {
+		return nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+	}
+}
@@ -1,22 +1,312 @@
 package nl.saxion.dna;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+/**
+ * Keeps the positions where a word occurs, in ascending order.
+ *
+ * New positions are appended to a plain int[] (the tail). When the tail
+ * fills up, or when freeze() is called, it is moved into a compact block
+ * where each position is stored as the difference with the previous one in
+ * a variable amount of bytes (7 bits per byte). Every SKIP positions the block
+ * remembers where it is, so a PositionCursor can jump ahead without
+ * decoding everything in between.
+ *
+ * withPosition(pos) gives back a new Data-object with one more position and
+ * leaves this one as it is, for tries that share their Data-objects between
+ * threads. The new object shares the arrays and only writes past the part
+ * this one uses, so its cost does not depend on the amount of positions.
+ *
+ * @author Idmon & Emre
+ */
 public class Data {
 
-	private int number;
-	private ArrayList<Integer> positions;
-	
+	static final int SKIP = 32;						// Positions between two skip entries
+	private static final int TAIL = 64;				// Size of the tail before it is frozen
+
+	private byte[] block;							// Frozen positions, delta + varint encoded
+	private int blockLength;						// Bytes used in the block
+	private int blockSize;							// Amount of positions in the block
+	private int blockLast;							// Last position in the block
+	private int[] skips;							// Per SKIP positions: the position and the byte offset after it
+	private int skipCount;							// Skip entries in use, two ints each
+	private int[] tail;								// Positions added since the last freeze
+	private int tailSize;							// Amount of positions in the tail
+	private volatile int extended;					// 1 once withPosition has written past this object
+
+	private static final AtomicIntegerFieldUpdater<Data> EXTENDED = AtomicIntegerFieldUpdater.newUpdater(Data.class, "extended");
+
 	public Data(int pos) {
-		this.positions = new ArrayList<Integer>();
-		this.positions.add(pos);
+		this.tail = new int[] { pos };
+		this.tailSize = 1;
+	}
+
+	/**
+	 * Copies another Data-object
+	 * @param other 	- The Data-object to copy
+	 * @param share 	- Use the same arrays instead of copies of them
+	 */
+	private Data(Data other, boolean share) {
+		block = share || other.block == null ? other.block : copyOf(other.block, other.block.length);
+		blockLength = other.blockLength;
+		blockSize = other.blockSize;
+		blockLast = other.blockLast;
+		skips = share || other.skips == null ? other.skips : copyOf(other.skips, other.skips.length);
+		skipCount = other.skipCount;
+		tail = share ? other.tail : copyOf(other.tail, other.tail.length);
+		tailSize = other.tailSize;
+	}
+
+	/**
+	 * Gives back a new Data-object with the positions of this one and one more.
+	 * This one is not changed, so it can still be read while this runs. The
+	 * first call on an object shares its arrays and only writes past the part
+	 * this object uses; a second call on the same object copies them. After
+	 * this call, add positions to the new object only, not with addPosition here.
+	 * @param pos 		- The new position
+	 * @return Data 	- A new Data-object
+	 */
+	public Data withPosition(int pos) {
+		int last = tailSize > 0 ? tail[tailSize - 1] : blockLast;
+		if(pos < last) {
+			// Rare: the position does not go at the end
+			return merge(this, new Data(pos));
+		}
+		Data next = new Data(this, EXTENDED.compareAndSet(this, 0, 1));
+		next.addPosition(pos);
+		return next;
 	}
-	
+
+	/**
+	 * Gives back all positions as a list
+	 * @return ArrayList<Integer> - A new list with the positions, ascending
+	 */
 	public ArrayList<Integer> getPosition() {
+		ArrayList<Integer> positions = new ArrayList<Integer>(frequency());
+		PositionCursor cursor = cursor();
+		while(cursor.hasNext()) {
+			positions.add(cursor.next());
+		}
 		return positions;
 	}
-	
+
+	/**
+	 * Gives back how often the word occurs
+	 * @return int - The amount of positions
+	 */
+	public int frequency() {
+		return blockSize + tailSize;
+	}
+
+	/**
+	 * Gives back a cursor that walks the positions in ascending order
+	 * @return PositionCursor - A new cursor at the first position
+	 */
+	public PositionCursor cursor() {
+		return new PositionCursor(this);
+	}
+
+	/**
+	 * Adds a position, keeping the positions in ascending order
+	 * @param pos - The new position
+	 */
 	public void addPosition(int pos) {
-		positions.add(pos);
+		if(blockSize > 0 && pos < blockLast) {
+			// Rare: the position belongs in the frozen part
+			thaw();
+		}
+		if(tailSize == tail.length) {
+			if(tailSize >= TAIL && pos >= tail[tailSize - 1]) {
+				freeze();
+			} else {
+				tail = copyOf(tail, Math.max(2, tailSize * 2));
+			}
+		}
+
+		// Find the spot, which is nearly always at the end
+		int i = tailSize;
+		while(i > 0 && tail[i - 1] > pos) {
+			i--;
+		}
+		System.arraycopy(tail, i, tail, i + 1, tailSize - i);
+		tail[i] = pos;
+		tailSize++;
+	}
+
+	/**
+	 * Adds all positions of another Data-object
+	 * @param other - The Data-object with the positions to add
+	 */
+	public void addAll(Data other) {
+		PositionCursor cursor = other.cursor();
+		while(cursor.hasNext()) {
+			addPosition(cursor.next());
+		}
+	}
+
+	/**
+	 * Builds a new Data-object with the positions of two others
+	 * @param a 		- The first Data-object
+	 * @param b 		- The second Data-object
+	 * @return Data 	- A new Data-object, a and b are not changed
+	 */
+	public static Data merge(Data a, Data b) {
+		PositionCursor left = a.cursor();
+		PositionCursor right = b.cursor();
+		int x = left.next();
+		int y = right.next();
+		Data merged = new Data(Math.min(x, y));
+		if(x <= y) {
+			x = left.next();
+		} else {
+			y = right.next();
+		}
+		while(x != PositionCursor.END || y != PositionCursor.END) {
+			if(x <= y) {
+				merged.addPosition(x);
+				x = left.next();
+			} else {
+				merged.addPosition(y);
+				y = right.next();
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Moves the tail into the compact block. Used for words that are
+	 * not going to change much anymore, or when the tail is full.
+	 */
+	public void freeze() {
+		if(tailSize == 0) {
+			return;
+		}
+		if(block == null) {
+			block = new byte[tailSize * 2];
+			skips = new int[Math.max(2, tailSize / SKIP * 2)];
+		}
+		for(int i = 0; i < tailSize; i++) {
+			int pos = tail[i];
+			if(blockLength + 5 > block.length) {
+				block = copyOf(block, Math.max(block.length * 2, blockLength + 5));
+			}
+			blockLength = writeVarint(block, blockLength, pos - (blockSize == 0 ? 0 : blockLast));
+			blockLast = pos;
+			blockSize++;
+
+			// Remember the end of each group of SKIP positions
+			if(blockSize % SKIP == 0) {
+				if(skipCount * 2 == skips.length) {
+					skips = copyOf(skips, Math.max(2, skips.length * 2));
+				}
+				skips[skipCount * 2] = pos;
+				skips[skipCount * 2 + 1] = blockLength;
+				skipCount++;
+			}
+		}
+		tailSize = 0;
+		tail = new int[Math.min(TAIL, Math.max(1, tail.length / 2))];
+	}
+
+	/**
+	 * Trims the block and the tail to the space they really need
+	 */
+	public void trim() {
+		if(block != null && block.length != blockLength) {
+			block = copyOf(block, blockLength);
+		}
+		if(skips != null && skips.length != skipCount * 2) {
+			skips = copyOf(skips, skipCount * 2);
+		}
+		if(tail.length != tailSize) {
+			tail = copyOf(tail, tailSize);
+		}
+	}
+
+	/**
+	 * Estimates the heap this Data-object takes: the object and its arrays
+	 * @return long - The bytes
+	 */
+	long retainedBytes() {
+		long bytes = MemoryFootprint.object(3 * MemoryFootprint.REFERENCE + 6 * 4);
+		if(block != null) {
+			bytes += MemoryFootprint.array(1, block.length);
+		}
+		if(skips != null) {
+			bytes += MemoryFootprint.array(4, skips.length);
+		}
+		return bytes + MemoryFootprint.array(4, tail.length);
+	}
+
+	/**
+	 * Decodes the block back into the tail
+	 */
+	private void thaw() {
+		int[] all = new int[Math.max(2, frequency() + 1)];
+		PositionCursor cursor = cursor();
+		int n = 0;
+		while(cursor.hasNext()) {
+			all[n++] = cursor.next();
+		}
+		block = null;
+		blockLength = 0;
+		blockSize = 0;
+		blockLast = 0;
+		skips = null;
+		skipCount = 0;
+		tail = all;
+		tailSize = n;
+	}
+
+	/**
+	 * Writes a non-negative number in groups of 7 bits, lowest first
+	 * @return int - The offset after the number
+	 */
+	static int writeVarint(byte[] bytes, int offset, int value) {
+		while((value & ~0x7F) != 0) {
+			bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private static byte[] copyOf(byte[] array, int length) {
+		byte[] copy = new byte[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	// Used by the PositionCursor
+
+	byte[] getBlock() {
+		return block;
+	}
+
+	int getBlockSize() {
+		return blockSize;
+	}
+
+	int[] getSkips() {
+		return skips;
+	}
+
+	int getSkipCount() {
+		return skipCount;
+	}
+
+	int[] getTail() {
+		return tail;
+	}
+
+	int getTailSize() {
+		return tailSize;
 	}
 }
@@ -0,0 +1,277 @@
+package nl.saxion.dna;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * A Trie<Data> kept in a directory, so the words and their positions survive
+ * a restart or a crash.
+ *
+ * Every insert and delete is applied to the trie in memory and added to a
+ * TrieLog, which forces the changes to disk in groups in the background.
+ * After flush() returns, all changes before it are durable. Once the log
+ * grows past a limit the trie is checkpointed: a new log is started, a
+ * snapshot of the trie is written with Trie.save(Path) and the old files are
+ * removed. Opening the directory loads the newest snapshot and replays the
+ * logs after it, so recovery takes no longer than reading one log.
+ *
+ * The checkpoint runs on the thread that made the change: the insert or
+ * delete that crosses the limit does not return until the whole snapshot has
+ * been written. Choose the limit with that pause in mind, or call
+ * checkpoint() yourself at a quiet moment.
+ *
+ * The files are numbered by generation: snapshot-G holds every change that
+ * was logged in the logs before log-G. Like Trie, this class is not made for
+ * changes from more than one thread at a time.
+ *
+ * @author Idmon & Emre
+ */
+public class DurableTrie {
+
+	private static final String SNAPSHOT = "snapshot-";
+	private static final String LOG = "log-";
+
+	private Path directory;							// Where the files are kept
+	private Trie<Data> trie;						// The trie in memory
+	private TrieLog log;							// The log being added to
+	private long generation;						// Generation of that log
+	private long limit;								// Log size in bytes that causes a checkpoint
+	private long interval;							// Milliseconds between group commits
+
+	/**
+	 * Opens a trie with a checkpoint every 64 MB of log and a group commit every 10 ms
+	 * @param directory 	- The directory with the files, created if needed
+	 * @throws IOException 	- When the files can't be read or written
+	 */
+	public DurableTrie(Path directory) throws IOException {
+		this(directory, 64L << 20, 10);
+	}
+
+	/**
+	 * Opens a trie, replaying what was logged after the last snapshot
+	 * @param directory 	- The directory with the files, created if needed
+	 * @param limit 		- Log size in bytes after which a checkpoint is made
+	 * @param interval 		- Milliseconds between group commits
+	 * @throws IOException 	- When the files can't be read or written
+	 */
+	public DurableTrie(Path directory, long limit, long interval) throws IOException {
+		this.directory = directory;
+		this.limit = limit;
+		this.interval = interval;
+		Files.createDirectories(directory);
+
+		// Take the newest snapshot that is complete and undamaged
+		ArrayList<Long> snapshots = generations(SNAPSHOT);
+		for(int i = snapshots.size() - 1; i >= 0 && trie == null; i--) {
+			trie = load(snapshot(snapshots.get(i)));
+			if(trie != null) {
+				generation = snapshots.get(i);
+			}
+		}
+		if(trie == null) {
+			trie = new Trie<Data>();
+		}
+
+		// Replay the logs from the generation of the snapshot onwards
+		for(long g : generations(LOG)) {
+			if(g >= generation) {
+				TrieLog.replay(log(g), trie);
+				generation = g;
+			}
+		}
+		log = new TrieLog(log(generation), interval);
+	}
+
+	/**
+	 * Adds an occurrence of a word. May checkpoint, see checkpoint().
+	 * @param word 			- The word, only letters
+	 * @param position 		- Its position
+	 * @throws IOException 	- When the log can't be written
+	 */
+	public void insert(String word, int position) throws IOException {
+		if(word == null || word.isEmpty() || !Trie.isLetters(word)) {
+			return;
+		}
+		String key = Trie.hasUpperCase(word) ? word.toLowerCase() : word;
+		log.insert(key, position);
+		if(!trie.addPosition(key, 0, key.length(), position)) {
+			trie.insert(key, new Data(position));
+		}
+		checkpointIfNeeded();
+	}
+
+	/**
+	 * Deletes a word with all of its positions. May checkpoint, see checkpoint().
+	 * @param word
+	 * @throws IOException 	- When the log can't be written
+	 */
+	public void delete(String word) throws IOException {
+		if(word == null || word.isEmpty() || !Trie.isLetters(word)) {
+			return;
+		}
+		String key = Trie.hasUpperCase(word) ? word.toLowerCase() : word;
+		if(trie.search(key) == null) {
+			return;
+		}
+		log.delete(key);
+		trie.delete(key);
+		checkpointIfNeeded();
+	}
+
+	/**
+	 * Search the trie for a specific word
+	 * @param word
+	 * @return Data 	- The positions of the word, null if it is not there
+	 */
+	public Data search(CharSequence word) {
+		return trie.search(word);
+	}
+
+	/**
+	 * Builds a list of words with the given Prefix
+	 * @param prefix
+	 * @return List  - A list of all the options
+	 */
+	public ArrayList<String> autocomplete(CharSequence prefix) {
+		return trie.autocomplete(prefix);
+	}
+
+	/**
+	 * Waits until all changes so far are forced to disk
+	 * @throws IOException 	- When the log can't be written
+	 */
+	public void flush() throws IOException {
+		log.flush();
+	}
+
+	/**
+	 * Writes a snapshot of the trie and removes the files it replaces.
+	 * A crash at any moment leaves either the old or the new snapshot
+	 * together with the logs that come after it. This blocks: it returns
+	 * when the snapshot is on disk, which takes as long as Trie.save(Path).
+	 * @throws IOException 	- When the files can't be written
+	 */
+	public void checkpoint() throws IOException {
+		// Changes from now on go to the next log
+		log.close();
+		long next = generation + 1;
+		log = new TrieLog(log(next), interval);
+		generation = next;
+
+		trie.save(snapshot(next));
+
+		// The new snapshot and log must be in the directory on disk before the old files go
+		syncDirectory();
+		for(long g : generations(SNAPSHOT)) {
+			if(g < next) {
+				Files.deleteIfExists(snapshot(g));
+			}
+		}
+		for(long g : generations(LOG)) {
+			if(g < next) {
+				Files.deleteIfExists(log(g));
+			}
+		}
+	}
+
+	/**
+	 * Flushes the log and closes it. The trie can't be changed afterwards.
+	 * @throws IOException 	- When the log can't be written
+	 */
+	public void close() throws IOException {
+		log.close();
+	}
+
+	/**
+	 * Gives back the trie in memory, to read from
+	 * @return Trie<Data> - The trie
+	 */
+	public Trie<Data> getTrie() {
+		return trie;
+	}
+
+	/**
+	 * Gives back the generation of the log being added to
+	 * @return long - The generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	private void checkpointIfNeeded() throws IOException {
+		if(log.size() >= limit) {
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Forces the entries of the directory to disk, so the files created and
+	 * moved in it survive a crash. Where a directory can't be opened, like on
+	 * Windows, the file system is trusted to keep them.
+	 */
+	private void syncDirectory() throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(directory, StandardOpenOption.READ);
+		} catch(IOException e) {
+			return;
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot into a trie
+	 * @return Trie<Data> - The trie, null if the snapshot is incomplete or damaged
+	 */
+	private static Trie<Data> load(Path path) {
+		try {
+			MappedTrie snapshot = new MappedTrie(path);
+			try {
+				return snapshot.verify() ? snapshot.toTrie() : null;
+			} finally {
+				snapshot.close();
+			}
+		} catch(IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the generations of the files with a given prefix, ascending
+	 */
+	private ArrayList<Long> generations(String prefix) throws IOException {
+		ArrayList<Long> generations = new ArrayList<Long>();
+		DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*");
+		try {
+			for(Path file : files) {
+				try {
+					generations.add(Long.parseLong(file.getFileName().toString().substring(prefix.length())));
+				} catch(NumberFormatException e) {
+					// Not one of ours, like a half written snapshot-G.tmp
+				}
+			}
+		} finally {
+			files.close();
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	private Path snapshot(long generation) {
+		return directory.resolve(SNAPSHOT + generation);
+	}
+
+	private Path log(long generation) {
+		return directory.resolve(LOG + generation);
+	}
+}
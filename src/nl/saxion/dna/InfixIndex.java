@@ -0,0 +1,269 @@
+package nl.saxion.dna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Finds the words that contain a piece of text anywhere, not only at the
+ * start. This is an n-gram index next to the Trie: every word gets an id and
+ * every piece of one, two or three letters points to the ids of the words it
+ * occurs in, the postings. The words only hold the letters a-z, so there are
+ * 26 + 26^2 + 26^3 pieces and they are kept in one array.
+ *
+ * A piece of up to three letters is looked up directly. A longer piece has
+ * several trigrams: the one with the fewest words is taken and each of those
+ * words is checked for the whole piece, so only words that share its rarest
+ * trigram are looked at.
+ *
+ * The postings of a gram are a sorted int array with room to grow. A new word
+ * adds its id to the postings of each of its grams, a deleted word removes it
+ * again and its id is used for the next new word. Like Trie, this class is not
+ * made for use from more than one thread at a time.
+ *
+ * @author Idmon & Emre
+ */
+public class InfixIndex {
+
+	private static final int LETTERS = 26;
+	private static final int BIGRAMS = LETTERS;						// Where the grams of two letters start
+	private static final int TRIGRAMS = BIGRAMS + LETTERS * LETTERS;	// Where the grams of three letters start
+	private static final int GRAMS = TRIGRAMS + LETTERS * LETTERS * LETTERS;
+	private static final int[] NO_IDS = new int[0];
+
+	private int[][] postings;						// Per gram: the ids of its words, sorted
+	private int[] sizes;							// Per gram: the ids in use
+	private String[] words;							// Per id: the word, null if the id is free
+	private HashMap<String, Integer> ids;			// Per word: its id
+	private int[] free;								// Ids of deleted words, to be used again
+	private int freeCount;
+	private int nextId;								// The lowest id that has never been used
+	private long entries;							// Ids in all postings together
+
+	public InfixIndex() {
+		postings = new int[GRAMS][];
+		Arrays.fill(postings, NO_IDS);
+		sizes = new int[GRAMS];
+		words = new String[16];
+		ids = new HashMap<String, Integer>();
+		free = new int[16];
+	}
+
+	/**
+	 * Adds a word, nothing happens if it is in the index already
+	 * @param word - A word of the letters a-z
+	 */
+	public void add(String word) {
+		if(ids.containsKey(word)) {
+			return;
+		}
+		int id;
+		if(freeCount > 0) {
+			id = free[--freeCount];
+		} else {
+			id = nextId++;
+			if(id == words.length) {
+				words = Arrays.copyOf(words, id * 2);
+			}
+		}
+		words[id] = word;
+		ids.put(word, id);
+		for(int gram : grams(word)) {
+			insert(gram, id);
+		}
+	}
+
+	/**
+	 * Removes a word, nothing happens if it is not in the index
+	 * @param word
+	 */
+	public void remove(String word) {
+		Integer id = ids.remove(word);
+		if(id == null) {
+			return;
+		}
+		for(int gram : grams(word)) {
+			delete(gram, id);
+		}
+		words[id] = null;
+		if(freeCount == free.length) {
+			free = Arrays.copyOf(free, freeCount * 2);
+		}
+		free[freeCount++] = id;
+	}
+
+	/**
+	 * Checks if a word is in the index
+	 * @param word
+	 * @return boolean - True if it has been added and not removed
+	 */
+	public boolean contains(String word) {
+		return ids.containsKey(word);
+	}
+
+	/**
+	 * Removes all words
+	 */
+	public void clear() {
+		Arrays.fill(postings, NO_IDS);
+		Arrays.fill(sizes, 0);
+		Arrays.fill(words, null);
+		ids.clear();
+		freeCount = 0;
+		nextId = 0;
+		entries = 0;
+	}
+
+	/**
+	 * Builds a list of the words that contain a piece of text
+	 * @param infix 		- The text to look for, in lowercase
+	 * @return ArrayList 	- The words, in alfabetical order
+	 */
+	public ArrayList<String> find(CharSequence infix) {
+		ArrayList<String> found = new ArrayList<String>();
+		for(int i = 0; i < infix.length(); i++) {
+			char c = infix.charAt(i);
+			if(c < 'a' || c > 'z') {
+				// No word holds anything else
+				return found;
+			}
+		}
+
+		if(infix.length() == 0) {
+			found.addAll(ids.keySet());
+		} else if(infix.length() <= 3) {
+			int gram = gram(infix, 0, infix.length());
+			for(int i = 0; i < sizes[gram]; i++) {
+				found.add(words[postings[gram][i]]);
+			}
+		} else {
+			// Only the words with the rarest trigram can hold the whole text
+			int rarest = gram(infix, 0, 3);
+			for(int i = 1; i + 3 <= infix.length(); i++) {
+				int gram = gram(infix, i, 3);
+				if(sizes[gram] < sizes[rarest]) {
+					rarest = gram;
+				}
+			}
+			String text = infix.toString();
+			for(int i = 0; i < sizes[rarest]; i++) {
+				String word = words[postings[rarest][i]];
+				if(word.contains(text)) {
+					found.add(word);
+				}
+			}
+		}
+		Collections.sort(found);
+		return found;
+	}
+
+	/**
+	 * Gives back the amount of words
+	 * @return int - The word count
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Gives back the amount of ids in all postings together
+	 * @return long - The postings entries
+	 */
+	public long getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Estimates the heap the index retains: the postings, the words with
+	 * their ids and the free ids, counted the way MemoryFootprint does
+	 * @return long - Bytes
+	 */
+	public long retainedBytes() {
+		long bytes = MemoryFootprint.array(MemoryFootprint.REFERENCE, GRAMS) + MemoryFootprint.array(4, GRAMS);
+		for(int[] ids : postings) {
+			if(ids != NO_IDS) {
+				bytes += MemoryFootprint.array(4, ids.length);
+			}
+		}
+		bytes += MemoryFootprint.array(MemoryFootprint.REFERENCE, words.length) + MemoryFootprint.array(4, free.length);
+
+		// HashMap: a table slot and a node per word, with a boxed id; the word itself
+		long node = MemoryFootprint.object(4 + 3 * MemoryFootprint.REFERENCE);
+		long boxed = MemoryFootprint.object(4);
+		for(String word : ids.keySet()) {
+			bytes += 2 * MemoryFootprint.REFERENCE + node + boxed;
+			bytes += MemoryFootprint.object(MemoryFootprint.REFERENCE + 4 + 1 + 1) + MemoryFootprint.array(1, word.length());
+		}
+		return bytes;
+	}
+
+	/**
+	 * Adds an id to the postings of a gram, keeping them sorted. New ids are
+	 * higher than all others, so nearly always it goes at the end.
+	 */
+	private void insert(int gram, int id) {
+		int[] list = postings[gram];
+		int size = sizes[gram];
+		if(size == list.length) {
+			list = Arrays.copyOf(list, Math.max(4, size * 2));
+			postings[gram] = list;
+		}
+		int i = size;
+		if(i > 0 && list[i - 1] > id) {
+			i = -(Arrays.binarySearch(list, 0, size, id) + 1);
+			System.arraycopy(list, i, list, i + 1, size - i);
+		}
+		list[i] = id;
+		sizes[gram]++;
+		entries++;
+	}
+
+	/**
+	 * Removes an id from the postings of a gram
+	 */
+	private void delete(int gram, int id) {
+		int[] list = postings[gram];
+		int size = sizes[gram];
+		int i = Arrays.binarySearch(list, 0, size, id);
+		System.arraycopy(list, i + 1, list, i, size - i - 1);
+		sizes[gram]--;
+		entries--;
+		if(sizes[gram] == 0) {
+			postings[gram] = NO_IDS;
+		}
+	}
+
+	/**
+	 * The distinct grams of one, two and three letters in a word
+	 */
+	private static int[] grams(String word) {
+		int length = word.length();
+		int[] grams = new int[3 * length];
+		int count = 0;
+		for(int n = 1; n <= 3; n++) {
+			for(int i = 0; i + n <= length; i++) {
+				grams[count++] = gram(word, i, n);
+			}
+		}
+		Arrays.sort(grams, 0, count);
+		int distinct = 0;
+		for(int i = 0; i < count; i++) {
+			if(distinct == 0 || grams[i] != grams[distinct - 1]) {
+				grams[distinct++] = grams[i];
+			}
+		}
+		return Arrays.copyOf(grams, distinct);
+	}
+
+	/**
+	 * The number of the gram of n letters at index i
+	 */
+	private static int gram(CharSequence text, int i, int n) {
+		int value = 0;
+		for(int j = 0; j < n; j++) {
+			value = value * LETTERS + (text.charAt(i + j) - 'a');
+		}
+		return n == 1 ? value : n == 2 ? BIGRAMS + value : TRIGRAMS + value;
+	}
+}
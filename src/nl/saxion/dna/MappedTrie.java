@@ -0,0 +1,384 @@
+package nl.saxion.dna;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A read-only trie that is served straight from a memory-mapped snapshot
+ * file, written by Trie.save(Path). Nothing is read until it is needed, so
+ * opening a snapshot of any size is instant.
+ *
+ * The file (big-endian) consists of:
+ * - Header: magic "TRIE", version, node count, label bytes, postings bytes (5 ints)
+ * - Node table: one record of 6 ints per node, the root first and then breadth-first,
+ *   so the children of a node are next to each other, sorted on starting character:
+ *   label offset, label length, first child, child count, postings offset (-1 if no word), frequency
+ * - Labels: the characters on the edges, one byte each
+ * - Postings: per word its positions, delta + varint encoded like a frozen Data-object
+ * - Trailer: CRC32 of everything before it (1 int)
+ *
+ * @author Idmon & Emre
+ */
+public class MappedTrie {
+
+	static final int MAGIC = 0x54524945;			// "TRIE"
+	static final int VERSION = 1;
+	private static final int HEADER = 20;			// Bytes in the header
+	private static final int RECORD = 24;			// Bytes per node
+
+	private MappedByteBuffer buffer;				// The mapped file
+	private int nodeCount;							// Amount of nodes
+	private int labels;								// Offset of the labels in the file
+	private int postings;							// Offset of the postings in the file
+	private int trailer;							// Offset of the checksum in the file
+
+	/**
+	 * Maps a snapshot file and checks its header
+	 * @param path 			- The snapshot file
+	 * @throws IOException 	- When the file can't be read or is no (valid) snapshot
+	 */
+	public MappedTrie(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path);
+		try {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot is larger than 2 GB: " + path);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.BIG_ENDIAN);
+		} finally {
+			channel.close();
+		}
+
+		if(buffer.capacity() < HEADER + 4 || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a trie snapshot: " + path);
+		}
+		if(buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + path);
+		}
+		nodeCount = buffer.getInt(8);
+		labels = HEADER + nodeCount * RECORD;
+		postings = labels + buffer.getInt(12);
+		trailer = postings + buffer.getInt(16);
+		if(nodeCount < 1 || trailer + 4 != buffer.capacity()) {
+			throw new IOException("Snapshot is truncated or damaged: " + path);
+		}
+	}
+
+	/**
+	 * Reads the whole file and compares it with the stored checksum
+	 * @return boolean - True if the file is undamaged
+	 */
+	public boolean verify() {
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[64 * 1024];
+		ByteBuffer reader = buffer.duplicate();
+		reader.position(0);
+		for(int offset = 0; offset < trailer; offset += chunk.length) {
+			int length = Math.min(chunk.length, trailer - offset);
+			reader.get(chunk, 0, length);
+			crc.update(chunk, 0, length);
+		}
+		return (int) crc.getValue() == buffer.getInt(trailer);
+	}
+
+	/**
+	 * Search the snapshot for a specific word
+	 * @param word
+	 * @return Data 	- A Data-object with the positions of the word, null if it is not there
+	 */
+	public Data search(CharSequence word) {
+		int node = locate(word, false, null);
+		if(node < 0 || postingsOf(node) < 0) {
+			return null;
+		}
+		return readData(node);
+	}
+
+	/**
+	 * Gives back how often a word occurs, without reading its positions
+	 * @param word
+	 * @return int - The frequency, 0 if the word is not there
+	 */
+	public int frequency(CharSequence word) {
+		int node = locate(word, false, null);
+		return node < 0 ? 0 : buffer.getInt(record(node) + 20);
+	}
+
+	/**
+	 * Builds a list of words with the given Prefix, in alfabetical order
+	 * @param prefix
+	 * @return List  - A list of all the options
+	 */
+	public ArrayList<String> autocomplete(CharSequence prefix) {
+		ArrayList<String> words = new ArrayList<String>();
+		StringBuilder builder = new StringBuilder();
+		int node = locate(prefix, true, builder);
+		if(node >= 0) {
+			collect(node, builder, words);
+		}
+		return words;
+	}
+
+	/**
+	 * Reads the whole snapshot into a normal, changeable Trie
+	 * @return Trie<Data> - A new trie with all words and positions
+	 */
+	public Trie<Data> toTrie() {
+		Trie<Data> trie = new Trie<Data>();
+		ArrayList<String> words = new ArrayList<String>();
+		collect(0, new StringBuilder(), words);
+		for(String word : words) {
+			trie.insert(word, search(word));
+		}
+		return trie;
+	}
+
+	/**
+	 * Gives back the amount of nodes in the snapshot
+	 * @return int - Node count, including the root
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Releases the mapping. The MappedTrie can't be used afterwards;
+	 * the memory is given back once the buffer is garbage collected.
+	 */
+	public void close() {
+		buffer = null;
+	}
+
+	/**
+	 * Walks down the node table along the key, comparing the labels in the file
+	 * @param path 	- Builder to add the labels on the way to, may be null
+	 * @return int 	- The node spelling the key (or starting with it), -1 if there is none
+	 */
+	private int locate(CharSequence key, boolean prefix, StringBuilder path) {
+		int node = 0;
+		int i = 0;
+		while(i < key.length()) {
+			node = findChild(node, key.charAt(i));
+			if(node < 0) {
+				return -1;
+			}
+			int offset = labels + buffer.getInt(record(node));
+			int length = buffer.getInt(record(node) + 4);
+			int matched = Math.min(length, key.length() - i);
+			for(int j = 1; j < matched; j++) {
+				if(buffer.get(offset + j) != key.charAt(i + j)) {
+					return -1;
+				}
+			}
+			if(matched < length && !prefix) {
+				return -1;
+			}
+			if(path != null) {
+				appendLabel(node, path);
+			}
+			i += matched;
+		}
+		return node;
+	}
+
+	/**
+	 * Binary search on the first character of the children of a node
+	 */
+	private int findChild(int node, char c) {
+		int low = buffer.getInt(record(node) + 8);
+		int high = low + buffer.getInt(record(node) + 12) - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			char first = (char) (buffer.get(labels + buffer.getInt(record(mid))) & 0xFF);
+			if(first < c) {
+				low = mid + 1;
+			} else if(first > c) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds all the words under a node, in alfabetical order
+	 */
+	private void collect(int node, StringBuilder builder, ArrayList<String> words) {
+		if(postingsOf(node) >= 0) {
+			words.add(builder.toString());
+		}
+		int first = buffer.getInt(record(node) + 8);
+		int count = buffer.getInt(record(node) + 12);
+		for(int child = first; child < first + count; child++) {
+			int length = builder.length();
+			appendLabel(child, builder);
+			collect(child, builder, words);
+			builder.setLength(length);
+		}
+	}
+
+	private void appendLabel(int node, StringBuilder builder) {
+		int offset = labels + buffer.getInt(record(node));
+		int length = buffer.getInt(record(node) + 4);
+		for(int j = 0; j < length; j++) {
+			builder.append((char) (buffer.get(offset + j) & 0xFF));
+		}
+	}
+
+	private int postingsOf(int node) {
+		return buffer.getInt(record(node) + 16);
+	}
+
+	/**
+	 * Decodes the positions of a word into a new Data-object
+	 */
+	private Data readData(int node) {
+		int offset = postings + postingsOf(node);
+		int frequency = buffer.getInt(record(node) + 20);
+		Data data = null;
+		int position = 0;
+		for(int n = 0; n < frequency; n++) {
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get(offset++);
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while(b < 0);
+			position = n == 0 ? delta : position + delta;
+			if(data == null) {
+				data = new Data(position);
+			} else {
+				data.addPosition(position);
+			}
+		}
+		return data;
+	}
+
+	private static int record(int node) {
+		return HEADER + node * RECORD;
+	}
+
+	/**
+	 * Writes a snapshot of a trie. The file is written next to the target
+	 * and moved in place when it is complete, so a crash never leaves half a snapshot.
+	 * @param root 			- The root-node of the trie
+	 * @param path 			- The snapshot file
+	 * @throws IOException 	- When the file can't be written
+	 */
+	static <T> void write(TrieNode<T> root, Path path) throws IOException {
+		// Number the nodes breadth-first, so children end up next to each other
+		ArrayList<TrieNode<T>> nodes = new ArrayList<TrieNode<T>>();
+		nodes.add(root);
+		int labelBytes = 0;
+		int postingsBytes = 0;
+		for(int i = 0; i < nodes.size(); i++) {
+			TrieNode<T> node = nodes.get(i);
+			labelBytes += node.getLabel().length();
+			if(node.isWord()) {
+				if(!(node.getData() instanceof Data)) {
+					throw new IllegalStateException("Only words with a Data-object can be saved: " + node);
+				}
+				postingsBytes += encodedSize((Data) node.getData());
+			}
+			for(TrieNode<T> child : node.getChildIndex()) {
+				nodes.add(child);
+			}
+		}
+
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		FileOutputStream file = new FileOutputStream(temp.toFile());
+		try {
+			CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+			DataOutputStream out = new DataOutputStream(checked);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(nodes.size());
+			out.writeInt(labelBytes);
+			out.writeInt(postingsBytes);
+
+			// Node table
+			int labelOffset = 0;
+			int postingsOffset = 0;
+			int nextChild = 1;
+			for(TrieNode<T> node : nodes) {
+				int children = node.getChildIndex().size();
+				out.writeInt(labelOffset);
+				out.writeInt(node.getLabel().length());
+				out.writeInt(nextChild);
+				out.writeInt(children);
+				if(node.isWord()) {
+					out.writeInt(postingsOffset);
+					out.writeInt(((Data) node.getData()).frequency());
+					postingsOffset += encodedSize((Data) node.getData());
+				} else {
+					out.writeInt(-1);
+					out.writeInt(0);
+				}
+				labelOffset += node.getLabel().length();
+				nextChild += children;
+			}
+
+			// Labels
+			for(TrieNode<T> node : nodes) {
+				out.writeBytes(node.getLabel());
+			}
+
+			// Postings
+			byte[] bytes = new byte[5];
+			for(TrieNode<T> node : nodes) {
+				if(node.isWord()) {
+					PositionCursor cursor = ((Data) node.getData()).cursor();
+					int previous = 0;
+					boolean first = true;
+					while(cursor.hasNext()) {
+						int position = cursor.next();
+						out.write(bytes, 0, Data.writeVarint(bytes, 0, first ? position : position - previous));
+						previous = position;
+						first = false;
+					}
+				}
+			}
+
+			out.flush();
+			out.writeInt((int) checked.getChecksum().getValue());
+			out.flush();
+			file.getChannel().force(true);
+		} finally {
+			file.close();
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Calculates how many bytes the positions take in the file
+	 */
+	private static int encodedSize(Data data) {
+		byte[] bytes = new byte[5];
+		PositionCursor cursor = data.cursor();
+		int size = 0;
+		int previous = 0;
+		boolean first = true;
+		while(cursor.hasNext()) {
+			int position = cursor.next();
+			size += Data.writeVarint(bytes, 0, first ? position : position - previous);
+			previous = position;
+			first = false;
+		}
+		return size;
+	}
+}
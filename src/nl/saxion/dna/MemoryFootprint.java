@@ -0,0 +1,164 @@
+package nl.saxion.dna;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estimates how much heap a Trie retains, split into categories: the parts
+ * of the TrieNode objects (headers, references, flags, counters, padding),
+ * the child indexes, the edge label Strings and the Data-objects.
+ *
+ * The sizes follow the layout of a 64-bit HotSpot JVM with compressed
+ * references: a 12 byte object header, 16 bytes for an array header, 4 byte
+ * references and everything rounded up to 8 bytes. A String that is shared
+ * by several nodes is counted once.
+ *
+ * @author Idmon & Emre
+ */
+public class MemoryFootprint {
+
+	static final int REFERENCE = 4;					// Bytes of a compressed reference
+	private static final int HEADER = 12;			// Bytes of an object header
+	private static final int ARRAY_HEADER = 16;		// Bytes of an array header, with its length
+	private static final int ALIGNMENT = 8;			// Objects start at a multiple of this
+
+	private LinkedHashMap<String, Long> categories;	// Bytes per category, in the order of the report
+	private long nodes;								// Nodes, with the root-node
+	private long words;								// Nodes that are a word
+
+	/**
+	 * Walks the tree under a node
+	 * @param root - The root-node of the Trie
+	 */
+	MemoryFootprint(TrieNode<?> root) {
+		// TrieNode: parent, children, characters, data | maxFrequency, nr, words, occurrences | startCharacter | isLeaf, isWord
+		long references = 4 * REFERENCE;
+		long counters = 3 * 4 + 8;
+		long flags = 2 + 1 + 1;
+		long padding = object(references + counters + flags) - HEADER - references - counters - flags;
+
+		long indexes = 0;
+		long labels = 0;
+		long data = 0;
+		IdentityHashMap<String, Boolean> seen = new IdentityHashMap<String, Boolean>();
+		ArrayDeque<TrieNode<?>> stack = new ArrayDeque<TrieNode<?>>();
+		stack.push(root);
+		while(!stack.isEmpty()) {
+			TrieNode<?> node = stack.pop();
+			nodes++;
+			if(node.isWord()) {
+				words++;
+			}
+			indexes += node.getChildIndex().retainedBytes();
+			String characters = node.getCharacters();
+			if(seen.put(characters, Boolean.TRUE) == null) {
+				// String: value, hash, coder, hashIsZero and its Latin-1 bytes
+				labels += object(REFERENCE + 4 + 1 + 1) + array(1, characters.length());
+			}
+			if(node.getData() instanceof Data) {
+				data += ((Data) node.getData()).retainedBytes();
+			}
+			for(TrieNode<?> child : node.getChildIndex()) {
+				stack.push(child);
+			}
+		}
+
+		categories = new LinkedHashMap<String, Long>();
+		categories.put("node headers", nodes * HEADER);
+		categories.put("node references", nodes * references);
+		categories.put("node counters", nodes * counters);
+		categories.put("node flags", nodes * flags);
+		categories.put("node padding", nodes * padding);
+		categories.put("child indexes", indexes);
+		categories.put("edge labels", labels);
+		categories.put("data", data);
+	}
+
+	/**
+	 * Gives back the bytes per category
+	 * @return Map - The categories in the order of the report
+	 */
+	public Map<String, Long> getCategories() {
+		return categories;
+	}
+
+	/**
+	 * Gives back the bytes of all categories together
+	 * @return long - The retained heap
+	 */
+	public long getTotal() {
+		long total = 0;
+		for(long bytes : categories.values()) {
+			total += bytes;
+		}
+		return total;
+	}
+
+	/**
+	 * Gives back the amount of nodes, with the root-node
+	 * @return long - The node count
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Gives back the amount of words
+	 * @return long - The word count
+	 */
+	public long getWords() {
+		return words;
+	}
+
+	/**
+	 * Gives back the retained heap divided over the nodes
+	 * @return double - Bytes per node
+	 */
+	public double getBytesPerNode() {
+		return (double) getTotal() / nodes;
+	}
+
+	/**
+	 * Gives back the retained heap divided over the words
+	 * @return double - Bytes per word, 0 for an empty Trie
+	 */
+	public double getBytesPerWord() {
+		return words == 0 ? 0 : (double) getTotal() / words;
+	}
+
+	/**
+	 * Builds a table with a line per category
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%-16s %14s %10s %10s%n", "category", "bytes", "per node", "per word"));
+		for(Map.Entry<String, Long> category : categories.entrySet()) {
+			long bytes = category.getValue();
+			builder.append(String.format("%-16s %14d %10.1f %10.1f%n", category.getKey(), bytes,
+					(double) bytes / nodes, words == 0 ? 0 : (double) bytes / words));
+		}
+		builder.append(String.format("%-16s %14d %10.1f %10.1f%n", "total", getTotal(), getBytesPerNode(), getBytesPerWord()));
+		return builder.toString();
+	}
+
+	/**
+	 * Bytes of an object with fields of this many bytes
+	 */
+	static long object(long fieldBytes) {
+		return align(HEADER + fieldBytes);
+	}
+
+	/**
+	 * Bytes of an array
+	 */
+	static long array(int elementBytes, int length) {
+		return align(ARRAY_HEADER + (long) elementBytes * length);
+	}
+
+	private static long align(long bytes) {
+		return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+}
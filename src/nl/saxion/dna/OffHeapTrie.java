@@ -0,0 +1,528 @@
+package nl.saxion.dna;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * A trie with the same insert, search, delete and autocomplete as Trie, that
+ * keeps its nodes and edge labels outside the Java heap, in direct ByteBuffers.
+ * The garbage collector sees a few buffers instead of an object per node, so
+ * a dictionary of tens of millions of words does not make its pauses longer.
+ *
+ * The nodes are records of 5 ints in chunks of 2^15 records:
+ * label offset, label length, first child, next sibling, value handle (-1 if no word).
+ * The children of a node form a list sorted on their first character.
+ * Labels are kept in chunks of 1 MB, one byte per character; splitting a node
+ * shares the bytes of its label, only merging after a delete copies them.
+ * The values themselves stay on the heap, in a table the value handles point
+ * into. Freed records and handles are used again.
+ *
+ * close() frees the buffers right away, through the cleaner of each buffer,
+ * after which the trie can't be used. On a JVM without sun.misc.Unsafe the
+ * memory is only given back once the garbage collector finds the buffers.
+ * Like Trie, this class is not made for use from more than one thread at a time.
+ *
+ * @author Idmon & Emre
+ * @param <T> Data structure
+ */
+public class OffHeapTrie<T> {
+
+	private static final int RECORD = 20;				// Bytes per node
+	private static final int NODE_BITS = 15;			// 2^NODE_BITS nodes per chunk
+	private static final int NODE_MASK = (1 << NODE_BITS) - 1;
+	private static final int LABEL_BITS = 20;			// 2^LABEL_BITS label bytes per chunk
+	private static final int LABEL_MASK = (1 << LABEL_BITS) - 1;
+	private static final int NONE = -1;
+	private static final int ROOT = 0;
+
+	// Offsets of the fields in a node record
+	private static final int LABEL = 0;
+	private static final int LENGTH = 4;
+	private static final int CHILD = 8;
+	private static final int NEXT = 12;
+	private static final int VALUE = 16;
+
+	// Unsafe.invokeCleaner frees a direct buffer at once, both null if it can't be found
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			// Left to the garbage collector
+			unsafe = null;
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private ArrayList<ByteBuffer> nodes;				// Node records, in chunks
+	private ArrayList<ByteBuffer> labels;				// Edge labels, in chunks
+	private int nodeEnd;								// Records handed out so far
+	private int freeNode;								// First freed record, linked through NEXT
+	private int liveNodes;								// Records in use, with the root-node
+	private int labelEnd;								// Where the next label goes
+	private long garbage;								// Label bytes that are not used anymore
+	private ArrayList<T> values;						// The values, on their handle
+	private int[] freeValues;							// Freed handles
+	private int freeValueCount;							// Amount of freed handles
+	private int words;									// Amount of words
+
+	public OffHeapTrie() {
+		nodes = new ArrayList<ByteBuffer>();
+		labels = new ArrayList<ByteBuffer>();
+		values = new ArrayList<T>();
+		freeValues = new int[16];
+		freeNode = NONE;
+		newNode(0, 0);
+	}
+
+	/**
+	 * Adds a new word to the trie. An existing word gets the positions of the
+	 * Data-object added, like Trie does.
+	 * @param word 	- The word that needs to be added, only letters
+	 * @param data 	- The Data-object that needs to be stored
+	 */
+	public void insert(String word, T data) {
+		assert data != null	: "Data object is null";
+		checkOpen();
+		if(word == null || word.isEmpty() || !Trie.isLetters(word)) {
+			return;
+		}
+		String key = Trie.hasUpperCase(word) ? word.toLowerCase() : word;
+
+		int node = ROOT;
+		int i = 0;
+		while(true) {
+			int child = findChild(node, key.charAt(i));
+			if(child == NONE) {
+				// The rest of the word becomes one new leaf
+				int leaf = newNode(addLabel(key, i), key.length() - i);
+				store(leaf, data);
+				link(node, leaf);
+				return;
+			}
+
+			// Match the label, split it where the word goes another way
+			int offset = get(child, LABEL);
+			int length = get(child, LENGTH);
+			int k = 1;
+			while(k < length && i + k < key.length() && labelAt(offset + k) == key.charAt(i + k)) {
+				k++;
+			}
+			if(k < length) {
+				split(child, k);
+			}
+			i += k;
+			if(i == key.length()) {
+				store(child, data);
+				return;
+			}
+			node = child;
+		}
+	}
+
+	/**
+	 * Search the trie for a specific word
+	 * @param word
+	 * @return T 	- The value stored with the word, null if it is not there
+	 */
+	public T search(CharSequence word) {
+		checkOpen();
+		int node = locate(word, false, null);
+		if(node == NONE || get(node, VALUE) == NONE) {
+			return null;
+		}
+		return values.get(get(node, VALUE));
+	}
+
+	/**
+	 * Deletes a word from the trie. A node that is left without a word and
+	 * with one child is merged with it, so the trie stays compressed.
+	 * @param word
+	 * @return boolean - False if the word was not there
+	 */
+	public boolean delete(CharSequence word) {
+		checkOpen();
+		int parent = NONE;
+		int node = ROOT;
+		int i = 0;
+		while(i < word.length()) {
+			int child = findChild(node, word.charAt(i));
+			if(child == NONE || !matches(child, word, i)) {
+				return false;
+			}
+			parent = node;
+			node = child;
+			i += get(child, LENGTH);
+		}
+		int handle = get(node, VALUE);
+		if(node == ROOT || handle == NONE) {
+			return false;
+		}
+		freeValue(handle);
+		set(node, VALUE, NONE);
+		words--;
+
+		int first = get(node, CHILD);
+		if(first == NONE) {
+			unlink(parent, node);
+			freeNode(node);
+			if(parent != ROOT && get(parent, VALUE) == NONE && get(get(parent, CHILD), NEXT) == NONE) {
+				mergeChild(parent);
+			}
+		} else if(get(first, NEXT) == NONE) {
+			mergeChild(node);
+		}
+		return true;
+	}
+
+	/**
+	 * Builds a list of words with the given Prefix, in alfabetical order
+	 * @param prefix
+	 * @return List  - A list of all the options
+	 */
+	public ArrayList<String> autocomplete(CharSequence prefix) {
+		checkOpen();
+		ArrayList<String> found = new ArrayList<String>();
+		StringBuilder builder = new StringBuilder();
+		int node = locate(prefix, true, builder);
+		if(node != NONE) {
+			collect(node, builder, found);
+		}
+		return found;
+	}
+
+	/**
+	 * Gives back the amount of words
+	 * @return int - The word count
+	 */
+	public int size() {
+		return words;
+	}
+
+	/**
+	 * Gives back the amount of nodes in use
+	 * @return int - Node count, including the root
+	 */
+	public int getNodeCount() {
+		return liveNodes;
+	}
+
+	/**
+	 * Gives back the bytes taken outside the heap, by the node and label chunks
+	 * @return long - The off-heap bytes
+	 */
+	public long getOffHeapBytes() {
+		if(nodes == null) {
+			return 0;
+		}
+		return (long) nodes.size() * (RECORD << NODE_BITS) + (long) labels.size() * (1 << LABEL_BITS);
+	}
+
+	/**
+	 * Gives back the label bytes that were left behind by merges
+	 * @return long - The unused label bytes
+	 */
+	public long getGarbageBytes() {
+		return garbage;
+	}
+
+	/**
+	 * Frees the buffers and releases the values. The trie can't be used
+	 * afterwards. Closing it again does nothing.
+	 */
+	public void close() {
+		if(nodes == null) {
+			return;
+		}
+		free(nodes);
+		free(labels);
+		nodes = null;
+		labels = null;
+		values = null;
+	}
+
+	/**
+	 * Frees direct buffers with their cleaner. Nothing may use them afterwards.
+	 */
+	private static void free(ArrayList<ByteBuffer> buffers) {
+		if(INVOKE_CLEANER == null) {
+			return;
+		}
+		try {
+			for(ByteBuffer buffer : buffers) {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			}
+		} catch(ReflectiveOperationException e) {
+			// The rest is left to the garbage collector
+		}
+	}
+
+	private void checkOpen() {
+		if(nodes == null) {
+			throw new IllegalStateException("OffHeapTrie is closed");
+		}
+	}
+
+	/**
+	 * Walks down along the key
+	 * @param prefix 	- If the key may end halfway a label
+	 * @param path 		- Builder to add the labels on the way to, may be null
+	 * @return int 		- The node spelling the key (or starting with it), -1 if there is none
+	 */
+	private int locate(CharSequence key, boolean prefix, StringBuilder path) {
+		int node = ROOT;
+		int i = 0;
+		while(i < key.length()) {
+			node = findChild(node, key.charAt(i));
+			if(node == NONE) {
+				return NONE;
+			}
+			int offset = get(node, LABEL);
+			int length = get(node, LENGTH);
+			int matched = Math.min(length, key.length() - i);
+			for(int j = 1; j < matched; j++) {
+				if(labelAt(offset + j) != key.charAt(i + j)) {
+					return NONE;
+				}
+			}
+			if(matched < length && !prefix) {
+				return NONE;
+			}
+			if(path != null) {
+				appendLabel(node, path);
+			}
+			i += matched;
+		}
+		return node;
+	}
+
+	/**
+	 * Checks that the whole label of a node follows in the key at i
+	 */
+	private boolean matches(int node, CharSequence key, int i) {
+		int offset = get(node, LABEL);
+		int length = get(node, LENGTH);
+		if(i + length > key.length()) {
+			return false;
+		}
+		for(int j = 1; j < length; j++) {
+			if(labelAt(offset + j) != key.charAt(i + j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Walks the sorted children for the one starting with c
+	 */
+	private int findChild(int node, char c) {
+		for(int child = get(node, CHILD); child != NONE; child = get(child, NEXT)) {
+			char first = labelAt(get(child, LABEL));
+			if(first == c) {
+				return child;
+			}
+			if(first > c) {
+				return NONE;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Adds a child at its place in the sorted list
+	 */
+	private void link(int node, int child) {
+		char c = labelAt(get(child, LABEL));
+		int previous = NONE;
+		int next = get(node, CHILD);
+		while(next != NONE && labelAt(get(next, LABEL)) < c) {
+			previous = next;
+			next = get(next, NEXT);
+		}
+		set(child, NEXT, next);
+		if(previous == NONE) {
+			set(node, CHILD, child);
+		} else {
+			set(previous, NEXT, child);
+		}
+	}
+
+	private void unlink(int node, int child) {
+		int previous = NONE;
+		int current = get(node, CHILD);
+		while(current != child) {
+			previous = current;
+			current = get(current, NEXT);
+		}
+		if(previous == NONE) {
+			set(node, CHILD, get(child, NEXT));
+		} else {
+			set(previous, NEXT, get(child, NEXT));
+		}
+	}
+
+	/**
+	 * Moves everything after the first k characters of the label into a new
+	 * child, which shares the label bytes
+	 */
+	private void split(int node, int k) {
+		int rest = newNode(get(node, LABEL) + k, get(node, LENGTH) - k);
+		set(rest, CHILD, get(node, CHILD));
+		set(rest, VALUE, get(node, VALUE));
+		set(node, LENGTH, k);
+		set(node, CHILD, rest);
+		set(node, VALUE, NONE);
+	}
+
+	/**
+	 * Takes over the only child of a node. When the label of the child comes
+	 * right after its own, as after a split, the bytes don't need to be copied.
+	 */
+	private void mergeChild(int node) {
+		int child = get(node, CHILD);
+		int offset = get(node, LABEL);
+		int length = get(node, LENGTH);
+		int childOffset = get(child, LABEL);
+		int childLength = get(child, LENGTH);
+		if(offset + length != childOffset || (offset >>> LABEL_BITS) != (childOffset >>> LABEL_BITS)) {
+			StringBuilder label = new StringBuilder(length + childLength);
+			appendLabel(node, label);
+			appendLabel(child, label);
+			set(node, LABEL, addLabel(label, 0));
+			garbage += length + childLength;
+		}
+		set(node, LENGTH, length + childLength);
+		set(node, CHILD, get(child, CHILD));
+		set(node, VALUE, get(child, VALUE));
+		freeNode(child);
+	}
+
+	/**
+	 * Adds all the words under a node, in alfabetical order
+	 */
+	private void collect(int node, StringBuilder builder, ArrayList<String> found) {
+		if(get(node, VALUE) != NONE) {
+			found.add(builder.toString());
+		}
+		for(int child = get(node, CHILD); child != NONE; child = get(child, NEXT)) {
+			int length = builder.length();
+			appendLabel(child, builder);
+			collect(child, builder, found);
+			builder.setLength(length);
+		}
+	}
+
+	/**
+	 * Stores a value with a node, or adds its positions when the node is a word already
+	 */
+	private void store(int node, T data) {
+		int handle = get(node, VALUE);
+		if(handle == NONE) {
+			if(freeValueCount > 0) {
+				handle = freeValues[--freeValueCount];
+				values.set(handle, data);
+			} else {
+				handle = values.size();
+				values.add(data);
+			}
+			set(node, VALUE, handle);
+			words++;
+		} else if(values.get(handle) instanceof Data && data instanceof Data) {
+			((Data) values.get(handle)).addAll((Data) data);
+		} else {
+			values.set(handle, data);
+		}
+	}
+
+	private void freeValue(int handle) {
+		values.set(handle, null);
+		if(freeValueCount == freeValues.length) {
+			int[] grown = new int[freeValues.length * 2];
+			System.arraycopy(freeValues, 0, grown, 0, freeValueCount);
+			freeValues = grown;
+		}
+		freeValues[freeValueCount++] = handle;
+	}
+
+	private int newNode(int label, int length) {
+		int node;
+		if(freeNode != NONE) {
+			node = freeNode;
+			freeNode = get(node, NEXT);
+		} else {
+			node = nodeEnd++;
+			if((node >>> NODE_BITS) == nodes.size()) {
+				nodes.add(ByteBuffer.allocateDirect(RECORD << NODE_BITS));
+			}
+		}
+		set(node, LABEL, label);
+		set(node, LENGTH, length);
+		set(node, CHILD, NONE);
+		set(node, NEXT, NONE);
+		set(node, VALUE, NONE);
+		liveNodes++;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		set(node, NEXT, freeNode);
+		freeNode = node;
+		liveNodes--;
+	}
+
+	/**
+	 * Copies the characters from start onwards into the label chunks.
+	 * A label never crosses the end of a chunk.
+	 * @return int - The offset of the label
+	 */
+	private int addLabel(CharSequence characters, int start) {
+		int length = characters.length() - start;
+		assert length <= LABEL_MASK + 1	: "Label is longer than a chunk";
+		if((labelEnd & LABEL_MASK) + length > LABEL_MASK + 1) {
+			labelEnd = (labelEnd | LABEL_MASK) + 1;
+		}
+		int offset = labelEnd;
+		while((offset + length - 1) >>> LABEL_BITS >= labels.size()) {
+			labels.add(ByteBuffer.allocateDirect(1 << LABEL_BITS));
+		}
+		ByteBuffer chunk = labels.get(offset >>> LABEL_BITS);
+		for(int j = 0; j < length; j++) {
+			chunk.put((offset & LABEL_MASK) + j, (byte) characters.charAt(start + j));
+		}
+		labelEnd = offset + length;
+		return offset;
+	}
+
+	private void appendLabel(int node, StringBuilder builder) {
+		int offset = get(node, LABEL);
+		int length = get(node, LENGTH);
+		for(int j = 0; j < length; j++) {
+			builder.append(labelAt(offset + j));
+		}
+	}
+
+	private char labelAt(int offset) {
+		return (char) (labels.get(offset >>> LABEL_BITS).get(offset & LABEL_MASK) & 0xFF);
+	}
+
+	private int get(int node, int field) {
+		return nodes.get(node >>> NODE_BITS).getInt((node & NODE_MASK) * RECORD + field);
+	}
+
+	private void set(int node, int field, int value) {
+		nodes.get(node >>> NODE_BITS).putInt((node & NODE_MASK) * RECORD + field, value);
+	}
+}
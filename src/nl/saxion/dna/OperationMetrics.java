@@ -0,0 +1,168 @@
+package nl.saxion.dna;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the operations on a Trie and keeps a latency histogram per operation.
+ * Operations that take longer than a threshold are also recorded as a
+ * SlowOperationEvent for Java Flight Recorder.
+ *
+ * The histograms work like HdrHistogram: values up to 128 ns get a bucket
+ * each, above that every power of two is split into 64 buckets. So every
+ * value is kept with an error of less than 1.6%, in a fixed amount of memory.
+ * Recording and reading may happen on different threads.
+ *
+ * @author Idmon & Emre
+ */
+public class OperationMetrics implements TrieMetrics {
+
+	private Histogram[] histograms;					// Per operation
+	private long threshold;							// Nanoseconds after which an operation is slow
+
+	/**
+	 * Constructor for metrics that report operations over 10 ms to Flight Recorder
+	 */
+	public OperationMetrics() {
+		this(10000000L);
+	}
+
+	/**
+	 * Constructor for metrics
+	 * @param threshold 	- Nanoseconds after which an operation is reported as slow
+	 */
+	public OperationMetrics(long threshold) {
+		this.threshold = threshold;
+		histograms = new Histogram[Operation.values().length];
+		for(int i = 0; i < histograms.length; i++) {
+			histograms[i] = new Histogram();
+		}
+	}
+
+	@Override
+	public void record(Operation operation, CharSequence key, int start, int end, long nanos) {
+		histograms[operation.ordinal()].record(nanos);
+		if(nanos >= threshold) {
+			SlowOperationEvent event = new SlowOperationEvent();
+			if(event.isEnabled()) {
+				event.operation = operation.name();
+				event.key = key.subSequence(start, end).toString();
+				event.nanos = nanos;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Gives back how often an operation has been done
+	 * @param operation
+	 * @return long - The amount of calls
+	 */
+	public long getCount(Operation operation) {
+		return histograms[operation.ordinal()].getCount();
+	}
+
+	/**
+	 * Gives back the latency histogram of an operation
+	 * @param operation
+	 * @return Histogram - The latencies in nanoseconds
+	 */
+	public Histogram getHistogram(Operation operation) {
+		return histograms[operation.ordinal()];
+	}
+
+	/**
+	 * Builds a line per operation with its count and latency percentiles
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for(Operation operation : Operation.values()) {
+			Histogram histogram = getHistogram(operation);
+			builder.append(String.format("%-12s count=%d p50=%dns p99=%dns p99.9=%dns max=%dns%n",
+					operation.name().toLowerCase(), histogram.getCount(), histogram.percentile(0.50),
+					histogram.percentile(0.99), histogram.percentile(0.999), histogram.getMax()));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Latencies in buckets of logarithmic size, 64 per power of two
+	 */
+	public static class Histogram {
+		private static final int SUB_BITS = 6;
+		private static final int SUB = 1 << SUB_BITS;
+
+		private AtomicLongArray counts;
+
+		private Histogram() {
+			counts = new AtomicLongArray(index(Long.MAX_VALUE) + 1);
+		}
+
+		private void record(long value) {
+			counts.incrementAndGet(index(Math.max(0, value)));
+		}
+
+		/**
+		 * Gives back the amount of values recorded
+		 * @return long - The count
+		 */
+		public long getCount() {
+			long count = 0;
+			for(int i = 0; i < counts.length(); i++) {
+				count += counts.get(i);
+			}
+			return count;
+		}
+
+		/**
+		 * Gives back the value below which a part of the values fall
+		 * @param percentile 	- The part, between 0 and 1
+		 * @return long 		- The highest value of its bucket, 0 if nothing was recorded
+		 */
+		public long percentile(double percentile) {
+			long[] snapshot = new long[counts.length()];
+			long total = 0;
+			for(int i = 0; i < snapshot.length; i++) {
+				snapshot[i] = counts.get(i);
+				total += snapshot[i];
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile * total));
+			long seen = 0;
+			for(int i = 0; i < snapshot.length; i++) {
+				seen += snapshot[i];
+				if(seen >= rank && snapshot[i] > 0) {
+					return highest(i);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Gives back the highest value recorded
+		 * @return long - The highest value of its bucket, 0 if nothing was recorded
+		 */
+		public long getMax() {
+			for(int i = counts.length() - 1; i >= 0; i--) {
+				if(counts.get(i) > 0) {
+					return highest(i);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * The bucket of a value: below 2 * SUB each value has its own, above that
+		 * the top SUB_BITS + 1 bits of the value pick one
+		 */
+		private static int index(long value) {
+			int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BITS - 1);
+			return (shift << SUB_BITS) + (int) (value >>> shift);
+		}
+
+		private static long highest(int index) {
+			int shift = Math.max(0, (index >> SUB_BITS) - 1);
+			long sub = index - ((long) shift << SUB_BITS);
+			return ((sub + 1) << shift) - 1;
+		}
+	}
+}
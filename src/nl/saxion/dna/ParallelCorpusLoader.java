@@ -0,0 +1,369 @@
+package nl.saxion.dna;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+
+/**
+ * Loads a corpus into a Trie<Data> on several threads. The result is the same
+ * as with CorpusLoader: the same tokens, with the same positions.
+ *
+ * The load has three steps:
+ * - Tokenize: the file is cut into chunks at whitespace, each chunk is mapped
+ *   and split into tokens by its own task. The tokens that are words go into a
+ *   bucket per starting letter, with their position within the chunk.
+ * - Build: the letters are divided over the shards, the busiest letter first
+ *   to the shard with the fewest tokens so far. Every shard builds its own trie
+ *   from its buckets, chunk after chunk, so the positions of every word come in
+ *   ascending order. The position of a token is its position within the chunk
+ *   plus the amount of tokens in the chunks before it.
+ * - Stitch: a shard only holds words starting with its own letters, so with
+ *   Trie.mergeFrom the children of its root are moved under the root of the
+ *   trie as they are. Only letters the trie had before the load are merged.
+ *
+ * @author Idmon & Emre
+ */
+public class ParallelCorpusLoader {
+
+	private static final long WINDOW = 1L << 28;	// Largest chunk that is mapped (256 MB)
+	private static final int MIN_CHUNK = 1 << 16;	// Smallest chunk worth a task of its own
+	private static final int LETTERS = 26;
+	
+	// The positions of a later load come after those already in the trie
+	private static final BinaryOperator<Data> APPEND = new BinaryOperator<Data>() {
+		public Data apply(Data before, Data after) {
+			before.addAll(after);
+			return before;
+		}
+	};
+
+	private Trie<Data> trie;						// The trie the words are added to
+	private int threads;							// Amount of tasks that run at once
+	private int position;							// Position of the last token
+	private long bytes;								// Amount of bytes read
+	private long nanos;								// Time spent reading
+
+	/**
+	 * Constructor for a loader that uses all cores
+	 * @param trie - The trie the words will be inserted into
+	 */
+	public ParallelCorpusLoader(Trie<Data> trie) {
+		this(trie, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor for a loader
+	 * @param trie 		- The trie the words will be inserted into
+	 * @param threads 	- The amount of threads to use
+	 */
+	public ParallelCorpusLoader(Trie<Data> trie, int threads) {
+		assert threads > 0	: "No threads";
+		this.trie = trie;
+		this.threads = threads;
+	}
+
+	/**
+	 * Reads all the words of a file into the trie.
+	 * Positions continue where a previous load ended.
+	 * @param fileName 		- The file to read
+	 * @throws IOException 	- When the file can't be read
+	 */
+	public void load(String fileName) throws IOException {
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+
+			// Tokenize
+			long[] cuts = cut(channel, size);
+			ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+			for(int i = 0; i + 1 < cuts.length; i++) {
+				chunks.add(new Chunk(channel, cuts[i], cuts[i + 1]));
+			}
+			run(pool, chunks);
+			int[] offsets = new int[chunks.size()];
+			long[] perLetter = new long[LETTERS];
+			int tokens = position;
+			for(int i = 0; i < chunks.size(); i++) {
+				offsets[i] = tokens;
+				tokens += chunks.get(i).tokens;
+				for(int letter = 0; letter < LETTERS; letter++) {
+					perLetter[letter] += chunks.get(i).buckets[letter].size;
+				}
+			}
+
+			// Build
+			ArrayList<Shard> shards = divide(perLetter, chunks, offsets);
+			run(pool, shards);
+
+			// Stitch
+			for(Shard shard : shards) {
+				trie.mergeFrom(shard.trie, APPEND);
+			}
+			position = tokens;
+			bytes += size;
+		} finally {
+			pool.shutdown();
+			file.close();
+		}
+		nanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * Cuts the file in chunks of about equal size. Every cut is moved forward
+	 * to the next whitespace, so no token is cut in two.
+	 * @return long[] - The offsets where the chunks start, and the size at the end
+	 */
+	private long[] cut(FileChannel channel, long size) throws IOException {
+		int count = (int) Math.max(1, Math.min(threads * 4L, size / MIN_CHUNK));
+		count = (int) Math.max(count, (size + WINDOW - 1) / WINDOW);
+		long[] cuts = new long[count + 1];
+		ByteBuffer probe = ByteBuffer.allocate(256);
+		for(int i = 1; i < count; i++) {
+			long offset = Math.max(cuts[i - 1], size * i / count);
+			boolean found = false;
+			while(offset < size && !found) {
+				probe.clear();
+				int read = channel.read(probe, offset);
+				for(int j = 0; j < read && !found; j++) {
+					if(CorpusLoader.isWhitespace(probe.get(j))) {
+						found = true;
+					} else {
+						offset++;
+					}
+				}
+			}
+			cuts[i] = offset;
+		}
+		cuts[count] = size;
+		return cuts;
+	}
+
+	/**
+	 * Gives each shard a part of the letters, so all shards get about as many tokens
+	 */
+	private ArrayList<Shard> divide(long[] perLetter, ArrayList<Chunk> chunks, int[] offsets) {
+		int count = Math.min(threads, LETTERS);
+		ArrayList<Shard> shards = new ArrayList<Shard>();
+		for(int i = 0; i < count; i++) {
+			shards.add(new Shard(chunks, offsets));
+		}
+		boolean[] placed = new boolean[LETTERS];
+		for(int n = 0; n < LETTERS; n++) {
+			int busiest = -1;
+			for(int letter = 0; letter < LETTERS; letter++) {
+				if(!placed[letter] && (busiest < 0 || perLetter[letter] > perLetter[busiest])) {
+					busiest = letter;
+				}
+			}
+			placed[busiest] = true;
+			if(perLetter[busiest] == 0) {
+				continue;
+			}
+			Shard least = shards.get(0);
+			for(Shard shard : shards) {
+				if(shard.tokens < least.tokens) {
+					least = shard;
+				}
+			}
+			least.letters.add(busiest);
+			least.tokens += perLetter[busiest];
+		}
+		return shards;
+	}
+
+	/**
+	 * Runs the tasks on the pool and waits for them
+	 */
+	private static void run(ForkJoinPool pool, ArrayList<? extends Callable<Void>> tasks) throws IOException {
+		for(Future<Void> result : pool.invokeAll(tasks)) {
+			try {
+				result.get();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Load was interrupted", e);
+			} catch(ExecutionException e) {
+				if(e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Gives back the position of the last token that has been read
+	 * @return int - The amount of tokens read so far
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Gives back the amount of bytes read
+	 * @return long - Bytes read over all loads
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gives back the time the loads took
+	 * @return long - Milliseconds spent over all loads
+	 */
+	public long getMillis() {
+		return nanos / 1000000;
+	}
+
+	/**
+	 * Gives back how fast the input has been read
+	 * @return double - Throughput in megabytes per second
+	 */
+	public double getThroughput() {
+		return nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+	}
+
+	/**
+	 * Splits one chunk of the file into tokens, like CorpusLoader does
+	 */
+	private static class Chunk implements Callable<Void> {
+		private FileChannel channel;
+		private long start;							// Offset of the chunk in the file
+		private long end;							// Offset after the chunk
+		private Bucket[] buckets;					// Per starting letter: the words
+		private int tokens;							// Amount of tokens, words or not
+
+		private Chunk(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			buckets = new Bucket[LETTERS];
+			for(int i = 0; i < LETTERS; i++) {
+				buckets[i] = new Bucket();
+			}
+		}
+
+		@Override
+		public Void call() throws IOException {
+			if(end == start) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			char[] token = new char[32];
+			int length = 0;
+			boolean letters = true;
+			int limit = buffer.limit();
+			for(int i = 0; i <= limit; i++) {
+				int b = i < limit ? buffer.get(i) : ' ';
+				if(CorpusLoader.isWhitespace(b)) {
+					if(length > 0) {
+						tokens++;
+						if(letters) {
+							buckets[token[0] - 'a'].add(token, length, tokens);
+						}
+						length = 0;
+						letters = true;
+					}
+					continue;
+				}
+				if(length == token.length) {
+					char[] grown = new char[length * 2];
+					System.arraycopy(token, 0, grown, 0, length);
+					token = grown;
+				}
+				if(b >= 'a' && b <= 'z') {
+					token[length++] = (char) b;
+				} else if(b >= 'A' && b <= 'Z') {
+					token[length++] = (char) (b + ('a' - 'A'));
+				} else {
+					// Anything else makes the token unusable, but it still counts
+					token[length++] = '?';
+					letters = false;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The words of one chunk with one starting letter: their characters after
+	 * each other, where each one ends and its position within the chunk
+	 */
+	private static class Bucket {
+		private char[] text = new char[64];
+		private int length;
+		private int[] ends = new int[8];
+		private int[] positions = new int[8];
+		private int size;
+
+		private void add(char[] word, int wordLength, int position) {
+			if(length + wordLength > text.length) {
+				char[] grown = new char[Math.max(text.length * 2, length + wordLength)];
+				System.arraycopy(text, 0, grown, 0, length);
+				text = grown;
+			}
+			if(size == ends.length) {
+				int[] grownEnds = new int[size * 2];
+				int[] grownPositions = new int[size * 2];
+				System.arraycopy(ends, 0, grownEnds, 0, size);
+				System.arraycopy(positions, 0, grownPositions, 0, size);
+				ends = grownEnds;
+				positions = grownPositions;
+			}
+			System.arraycopy(word, 0, text, length, wordLength);
+			length += wordLength;
+			ends[size] = length;
+			positions[size] = position;
+			size++;
+		}
+	}
+
+	/**
+	 * Builds a trie of the words starting with some of the letters
+	 */
+	private static class Shard implements Callable<Void> {
+		private ArrayList<Chunk> chunks;
+		private int[] offsets;						// Per chunk: the position before its first token
+		private ArrayList<Integer> letters;			// The starting letters of this shard
+		private long tokens;						// Amount of words with those letters
+		private Trie<Data> trie;
+
+		private Shard(ArrayList<Chunk> chunks, int[] offsets) {
+			this.chunks = chunks;
+			this.offsets = offsets;
+			letters = new ArrayList<Integer>();
+			trie = new Trie<Data>();
+		}
+
+		@Override
+		public Void call() {
+			for(int letter : letters) {
+				for(int c = 0; c < chunks.size(); c++) {
+					Bucket bucket = chunks.get(c).buckets[letter];
+					CharBuffer text = CharBuffer.wrap(bucket.text, 0, bucket.length);
+					int begin = 0;
+					for(int i = 0; i < bucket.size; i++) {
+						int end = bucket.ends[i];
+						int position = offsets[c] + bucket.positions[i];
+						if(!trie.addPosition(text, begin, end, position)) {
+							trie.insert(new String(bucket.text, begin, end - begin), new Data(position));
+						}
+						begin = end;
+					}
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package nl.saxion.dna;
+
+import java.util.ArrayList;
+
+/**
+ * Finds the places in the corpus where words occur together, using the
+ * positions the Data-objects keep for every word:
+ * - A phrase: the words right after each other, in the order given.
+ * - Near: all words within a distance of each other, in any order.
+ *
+ * The matches are found one at a time with next(), so a query on frequent
+ * words doesn't build a list of them. Every word gets a PositionCursor. The
+ * cursors only move forward and skip with advance(), which jumps through the
+ * frozen positions with the skip entries and gallops through the tail, so the
+ * positions between two matches are mostly never decoded.
+ *
+ * For a phrase the cursors take turns in the order of their frequency: the
+ * rarest word proposes a start, every other word is moved to its place
+ * relative to that start, and a word that isn't there proposes a later start.
+ * For near the window from the lowest to the highest cursor slides along: when
+ * it is too wide, the lowest cursor skips to where a window could fit.
+ *
+ * The trie should not be changed while a query runs.
+ *
+ * @author Idmon & Emre
+ */
+public class PhraseQuery {
+
+	private PositionCursor[] cursors;				// Per word: its positions, null if a word is missing
+	private int[] offsets;							// Per word: its place in the phrase
+	private int[] current;							// Per word: the last position read, -1 before the first
+	private int[] order;							// The words, rarest first
+	private int distance;							// Span allowed for near, -1 for a phrase
+	private boolean started;						// Has next() been called
+	private int start;								// Position of the first word of the match
+	private int end;								// Position of the last word of the match
+
+	/**
+	 * Builds a query for words at consecutive positions
+	 * @param trie 			- The trie with the positions
+	 * @param words 		- The words of the phrase, a String may hold several separated by spaces
+	 * @return PhraseQuery 	- The query, ready for next()
+	 */
+	public static PhraseQuery phrase(Trie<Data> trie, String... words) {
+		return new PhraseQuery(trie, split(words, false), -1);
+	}
+
+	/**
+	 * Builds a query for words that all occur within a distance of each other
+	 * @param trie 			- The trie with the positions
+	 * @param distance 		- The most positions between the first and the last word, 0 or more
+	 * @param words 		- The words, a String may hold several separated by spaces
+	 * @return PhraseQuery 	- The query, ready for next()
+	 */
+	public static PhraseQuery near(Trie<Data> trie, int distance, String... words) {
+		assert distance >= 0	: "Distance is negative";
+		return new PhraseQuery(trie, split(words, true), distance);
+	}
+
+	private PhraseQuery(Trie<Data> trie, ArrayList<String> words, int distance) {
+		this.distance = distance;
+		int n = words.size();
+		cursors = new PositionCursor[n];
+		offsets = new int[n];
+		current = new int[n];
+		order = new int[n];
+		int[] frequencies = new int[n];
+		for(int i = 0; i < n; i++) {
+			Data data = trie.search(words.get(i));
+			if(data == null) {
+				// A missing word leaves nothing to find
+				cursors = null;
+				return;
+			}
+			cursors[i] = data.cursor();
+			offsets[i] = distance < 0 ? i : 0;
+			current[i] = -1;
+			frequencies[i] = data.frequency();
+
+			// Insertion sort on frequency, there are only a few words
+			int j = i;
+			while(j > 0 && frequencies[order[j - 1]] > frequencies[i]) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = i;
+		}
+		if(n == 0) {
+			cursors = null;
+		}
+	}
+
+	/**
+	 * Moves to the next match
+	 * @return boolean - False when there are no matches left
+	 */
+	public boolean next() {
+		if(cursors == null) {
+			return false;
+		}
+		boolean found = distance < 0 ? nextPhrase() : nextNear();
+		started = true;
+		if(!found) {
+			cursors = null;
+		}
+		return found;
+	}
+
+	/**
+	 * Gives back where the match starts
+	 * @return int - The position of its first word
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Gives back where the match ends
+	 * @return int - The position of its last word
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Counts the matches that are left, by walking them
+	 * @return int - The amount of matches
+	 */
+	public int count() {
+		int count = 0;
+		while(next()) {
+			count++;
+		}
+		return count;
+	}
+
+	private boolean nextPhrase() {
+		int candidate = started ? start + 1 : 0;
+		while(true) {
+			boolean agreed = true;
+			for(int i : order) {
+				int wanted = candidate + offsets[i];
+				if(current[i] < wanted) {
+					current[i] = cursors[i].advance(wanted);
+				}
+				if(current[i] == PositionCursor.END) {
+					return false;
+				}
+				if(current[i] > wanted) {
+					// This word is not there, the earliest start it allows is later
+					candidate = current[i] - offsets[i];
+					agreed = false;
+					break;
+				}
+			}
+			if(agreed) {
+				start = candidate;
+				end = candidate + offsets[cursors.length - 1];
+				return true;
+			}
+		}
+	}
+
+	private boolean nextNear() {
+		if(!started) {
+			for(int i = 0; i < cursors.length; i++) {
+				current[i] = cursors[i].next();
+			}
+		} else {
+			// The lowest word of the last match moves on
+			int lowest = lowest();
+			current[lowest] = cursors[lowest].next();
+		}
+		while(true) {
+			int lowest = lowest();
+			int highest = current[0];
+			for(int i = 1; i < cursors.length; i++) {
+				highest = Math.max(highest, current[i]);
+			}
+			if(highest == PositionCursor.END) {
+				return false;
+			}
+			if(highest - current[lowest] <= distance) {
+				start = current[lowest];
+				end = highest;
+				return true;
+			}
+			// A window with the highest word starts no earlier than this
+			current[lowest] = cursors[lowest].advance(highest - distance);
+		}
+	}
+
+	private int lowest() {
+		int lowest = 0;
+		for(int i = 1; i < cursors.length; i++) {
+			if(current[i] < current[lowest]) {
+				lowest = i;
+			}
+		}
+		return lowest;
+	}
+
+	/**
+	 * Splits the words at spaces and puts them in lowercase
+	 * @param distinct - Is a word that comes again left out
+	 */
+	private static ArrayList<String> split(String[] words, boolean distinct) {
+		ArrayList<String> list = new ArrayList<String>();
+		for(String part : words) {
+			for(String word : part.trim().split("\\s+")) {
+				if(word.isEmpty()) {
+					continue;
+				}
+				word = word.toLowerCase();
+				if(!distinct || !list.contains(word)) {
+					list.add(word);
+				}
+			}
+		}
+		return list;
+	}
+}
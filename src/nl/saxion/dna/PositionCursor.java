@@ -0,0 +1,133 @@
+package nl.saxion.dna;
+
+/**
+ * Walks the positions of a Data-object in ascending order without
+ * creating a list of them. With advance(target) the cursor skips ahead:
+ * in the frozen block it jumps over whole groups of positions using the
+ * skip entries, in the tail it gallops (1, 2, 4, ... steps) and then
+ * searches binary.
+ *
+ * The Data-object should not be changed while a cursor walks over it.
+ *
+ * @author Idmon & Emre
+ */
+public class PositionCursor {
+
+	public static final int END = Integer.MAX_VALUE;	// Returned when there are no positions left
+
+	private byte[] block;							// The frozen positions
+	private int blockSize;							// Amount of frozen positions
+	private int[] skips;							// Skip entries of the block
+	private int skipCount;							// Skip entries in use
+	private int[] tail;								// The positions that are not frozen
+	private int tailSize;							// Amount of positions in the tail
+
+	private int index;								// Amount of positions read
+	private int offset;								// Byte offset of the next position in the block
+	private int current;							// The last position read from the block
+
+	public PositionCursor(Data data) {
+		this.block = data.getBlock();
+		this.blockSize = data.getBlockSize();
+		this.skips = data.getSkips();
+		this.skipCount = data.getSkipCount();
+		this.tail = data.getTail();
+		this.tailSize = data.getTailSize();
+	}
+
+	/**
+	 * Are there positions left
+	 * @return boolean - True if next() gives a position
+	 */
+	public boolean hasNext() {
+		return index < blockSize + tailSize;
+	}
+
+	/**
+	 * Reads the next position
+	 * @return int - The position, or END when there are none left
+	 */
+	public int next() {
+		if(index < blockSize) {
+			// Decode the difference with the previous position
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = block[offset++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while(b < 0);
+			current = index == 0 ? delta : current + delta;
+			index++;
+			return current;
+		}
+		if(index < blockSize + tailSize) {
+			return tail[index++ - blockSize];
+		}
+		return END;
+	}
+
+	/**
+	 * Skips to the first position that is at least the target and reads it
+	 * @param target 	- The position to look for
+	 * @return int 		- The first position >= target, or END when there is none
+	 */
+	public int advance(int target) {
+		// Jump over groups of the block that end before the target
+		if(index < blockSize && skips != null) {
+			int group = index / Data.SKIP;
+			int low = group;
+			int high = skipCount - 1;
+			int found = -1;
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				if(skips[mid * 2] < target) {
+					found = mid;
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			if(found >= 0 && (found + 1) * Data.SKIP > index) {
+				index = (found + 1) * Data.SKIP;
+				current = skips[found * 2];
+				offset = skips[found * 2 + 1];
+			}
+		}
+		while(index < blockSize) {
+			int pos = next();
+			if(pos >= target) {
+				return pos;
+			}
+		}
+
+		// Gallop through the tail, then search binary in the last step
+		int from = index - blockSize;
+		if(from >= tailSize) {
+			return END;
+		}
+		int step = 1;
+		int high = from;
+		while(high < tailSize && tail[high] < target) {
+			from = high + 1;
+			high = from + step;
+			step *= 2;
+		}
+		high = Math.min(high, tailSize - 1);
+		while(from < high) {
+			int mid = (from + high) >>> 1;
+			if(tail[mid] < target) {
+				from = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		if(from >= tailSize || tail[from] < target) {
+			index = blockSize + tailSize;
+			return END;
+		}
+		index = blockSize + from + 1;
+		return tail[from];
+	}
+}
@@ -0,0 +1,274 @@
+package nl.saxion.dna;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the results of Trie.autocomplete for the prefixes that are asked for
+ * most, so a popular prefix does not walk its whole subtree every time.
+ *
+ * The cache is bounded on the amount of prefixes and on its weight, which is
+ * the amount of words in all results together. Which prefixes stay follows
+ * W-TinyLFU: a new prefix first goes into a small window kept in LRU order.
+ * When it falls out of the window it only takes the place of the least
+ * recently used prefix in the main part if it has been asked for more often,
+ * so a burst of one-off prefixes can't push out the popular ones. How often a
+ * prefix is asked for is estimated by a count-min sketch that is halved now
+ * and then, so old popularity fades.
+ *
+ * A new or deleted word only changes the results of its own prefixes, so
+ * those are removed and the rest of the cache stays. Like Trie, this class is
+ * not made for use from more than one thread at a time.
+ *
+ * @author Idmon & Emre
+ */
+public class PrefixCache {
+
+	private LinkedHashMap<String, ArrayList<String>> window;	// New prefixes, in LRU order
+	private LinkedHashMap<String, ArrayList<String>> main;		// Admitted prefixes, in LRU order
+	private FrequencySketch sketch;								// How often prefixes are asked for
+	private int maxEntries;										// The maximum amount of prefixes
+	private int maxWindow;										// The maximum amount of prefixes in the window
+	private long maxWeight;										// The maximum amount of words
+	private long weight;										// Words in the cache now
+	private int maxLength;										// Length of the longest cached prefix
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/**
+	 * Constructor for a cache
+	 * @param maxEntries 	- The maximum amount of prefixes
+	 * @param maxWeight 	- The maximum amount of words in all results together
+	 */
+	public PrefixCache(int maxEntries, long maxWeight) {
+		assert maxEntries > 0	: "maxEntries is not positive";
+		assert maxWeight > 0	: "maxWeight is not positive";
+
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		maxWindow = Math.max(1, maxEntries / 100);
+		window = new LinkedHashMap<String, ArrayList<String>>(16, 0.75f, true);
+		main = new LinkedHashMap<String, ArrayList<String>>(16, 0.75f, true);
+		sketch = new FrequencySketch(maxEntries);
+	}
+
+	/**
+	 * Gives back the cached words of a prefix and counts it as asked for
+	 * @param prefix
+	 * @return ArrayList - A copy of the words, null if the prefix is not cached
+	 */
+	ArrayList<String> get(String prefix) {
+		sketch.increment(prefix);
+		ArrayList<String> words = window.get(prefix);
+		if(words == null) {
+			words = main.get(prefix);
+		}
+		if(words == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return new ArrayList<String>(words);
+	}
+
+	/**
+	 * Keeps the words of a prefix, which was just missed
+	 * @param prefix
+	 * @param words 	- The words, they are copied
+	 */
+	void put(String prefix, ArrayList<String> words) {
+		long w = weigh(words);
+		if(w > maxWeight || window.containsKey(prefix) || main.containsKey(prefix)) {
+			return;
+		}
+		window.put(prefix, new ArrayList<String>(words));
+		weight += w;
+		maxLength = Math.max(maxLength, prefix.length());
+
+		while(window.size() > maxWindow) {
+			Iterator<Map.Entry<String, ArrayList<String>>> eldest = window.entrySet().iterator();
+			Map.Entry<String, ArrayList<String>> candidate = eldest.next();
+			eldest.remove();
+			admit(candidate.getKey(), candidate.getValue());
+		}
+
+		// Too many words: the least recently used go, the main part first
+		while(weight > maxWeight) {
+			evict(main.isEmpty() ? window : main);
+		}
+	}
+
+	/**
+	 * A word has been added or deleted, so the prefixes of it are removed
+	 * @param word
+	 */
+	void invalidate(String word) {
+		if(window.isEmpty() && main.isEmpty()) {
+			return;
+		}
+		int length = Math.min(word.length(), maxLength);
+		for(int i = 0; i <= length; i++) {
+			String prefix = word.substring(0, i);
+			ArrayList<String> words = window.remove(prefix);
+			if(words == null) {
+				words = main.remove(prefix);
+			}
+			if(words != null) {
+				weight -= weigh(words);
+				invalidations++;
+			}
+		}
+	}
+
+	/**
+	 * Removes all prefixes, for when the whole Trie changed at once
+	 */
+	void clear() {
+		invalidations += window.size() + main.size();
+		window.clear();
+		main.clear();
+		weight = 0;
+		maxLength = 0;
+	}
+
+	/**
+	 * A prefix fell out of the window. It goes into the main part if there is
+	 * room, or if it was asked for more often than the prefixes it replaces.
+	 */
+	private void admit(String prefix, ArrayList<String> words) {
+		while(window.size() + main.size() >= maxEntries) {
+			if(main.isEmpty() || sketch.frequency(prefix) <= sketch.frequency(main.keySet().iterator().next())) {
+				weight -= weigh(words);
+				evictions++;
+				return;
+			}
+			evict(main);
+		}
+		main.put(prefix, words);
+	}
+
+	private void evict(LinkedHashMap<String, ArrayList<String>> part) {
+		Iterator<ArrayList<String>> eldest = part.values().iterator();
+		weight -= weigh(eldest.next());
+		eldest.remove();
+		evictions++;
+	}
+
+	private static long weigh(ArrayList<String> words) {
+		return words.size() + 1;
+	}
+
+	/**
+	 * Gives back how many lookups were answered from the cache
+	 * @return long - The amount of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gives back how many lookups had to walk the Trie
+	 * @return long - The amount of misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gives back how many prefixes were removed to make room
+	 * @return long - The amount of evictions
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Gives back how many prefixes were removed because a word under them changed
+	 * @return long - The amount of invalidations
+	 */
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Gives back the amount of prefixes that are cached
+	 * @return int - The amount of prefixes
+	 */
+	public int size() {
+		return window.size() + main.size();
+	}
+
+	/**
+	 * Gives back the amount of words that are cached, plus one per prefix
+	 * @return long - The weight
+	 */
+	public long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Estimates how often a key was seen, with four rows of counters that each
+	 * overcount because of collisions; the lowest of the four is taken. After
+	 * ten times as many increments as there are counters per row, all counters
+	 * are halved.
+	 */
+	private static class FrequencySketch {
+		private static final int DEPTH = 4;
+		private static final int[] SEEDS = { 0x97cb3127, 0x5bd1e995, 0xc2b2ae35, 0x27d4eb2f };
+
+		private byte[][] counters;
+		private int mask;
+		private int additions;
+		private int sampleSize;
+
+		private FrequencySketch(int maxEntries) {
+			int width = Integer.highestOneBit(Math.max(16, maxEntries * 2 - 1)) << 1;
+			counters = new byte[DEPTH][width];
+			mask = width - 1;
+			sampleSize = 10 * width;
+		}
+
+		private void increment(String key) {
+			int hash = spread(key.hashCode());
+			for(int i = 0; i < DEPTH; i++) {
+				int j = index(hash, i);
+				if(counters[i][j] < 15) {
+					counters[i][j]++;
+				}
+			}
+			if(++additions == sampleSize) {
+				for(byte[] row : counters) {
+					for(int j = 0; j < row.length; j++) {
+						row[j] >>= 1;
+					}
+				}
+				additions /= 2;
+			}
+		}
+
+		private int frequency(String key) {
+			int hash = spread(key.hashCode());
+			int min = 15;
+			for(int i = 0; i < DEPTH; i++) {
+				min = Math.min(min, counters[i][index(hash, i)]);
+			}
+			return min;
+		}
+
+		private int index(int hash, int row) {
+			int h = hash * SEEDS[row];
+			return (h ^ (h >>> 16)) & mask;
+		}
+
+		private static int spread(int hash) {
+			hash ^= hash >>> 17;
+			hash *= 0xed5ad4bb;
+			return hash ^ (hash >>> 11);
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package nl.saxion.dna;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for a trie operation that took longer than the
+ * threshold of its OperationMetrics. Recorded when a recording has
+ * 'nl.saxion.dna.SlowOperation' enabled.
+ *
+ * @author Idmon & Emre
+ */
+@Name("nl.saxion.dna.SlowOperation")
+@Label("Slow Trie Operation")
+@Category("Trie")
+@Description("A trie operation that took longer than the threshold")
+class SlowOperationEvent extends jdk.jfr.Event {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Key")
+	String key;
+
+	@Label("Time Taken")
+	@Timespan(Timespan.NANOSECONDS)
+	long nanos;
+}
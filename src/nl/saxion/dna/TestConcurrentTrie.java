@@ -0,0 +1,220 @@
+package nl.saxion.dna;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestConcurrentTrie {
+
+	private static final int WRITERS = 4;
+	private static final int READERS = 4;
+	private static final int OPERATIONS = 20000;
+
+	private ConcurrentTrie<Data> trie;
+
+	/**
+	 * Constructs a basic ConcurrentTrie-structure
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		trie = new ConcurrentTrie<Data>();
+	}
+
+	/**
+	 * Tests the same behaviour as the Trie, on one thread
+	 */
+	@Test
+	public void testInsertSearchDelete() {
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		trie.insert("Dorm", new Data(9));		// Add the word 'dorm' again on position 9
+
+		assertEquals(1, trie.search("do").getPosition().get(0).intValue());		// CHECK: position = 1
+		assertEquals(2, trie.search("dorm").getPosition().size());				// CHECK: 'dorm' twice
+		assertNull(trie.search("dor"));											// FAIL: 'dor' is only a prefix
+		assertEquals(new ArrayList<String>(new TreeSet<String>(trie.autocomplete("d"))), trie.autocomplete("d"));	// CHECK: in order
+
+		assertTrue(trie.delete("do"));			// Delete the word from the trie
+		assertFalse(trie.delete("do"));			// It is gone already
+		assertNull(trie.search("do"));			// Check: Word can't be found anymore
+		assertNotNull(trie.search("doll"));		// Check: Other words stay
+		assertTrue(trie.delete("doll"));		// Delete until only 'dorm' is left
+		assertEquals(Collections.singletonList("dorm"), trie.autocomplete(""));	// CHECK: only 'dorm'
+	}
+
+	/**
+	 * Writers insert and delete their own words, which all share prefixes so
+	 * edges get split and merged all the time. Each writer checks that it reads
+	 * its own changes right away. Readers check that words which are never
+	 * deleted can always be found, whatever happens around them.
+	 * @throws Exception
+	 */
+	@Test
+	public void testStress() throws Exception {
+		// Words that stay in the trie during the whole test
+		final ArrayList<String> pinned = new ArrayList<String>();
+		for(String word : new String[] { "a", "ab", "abba", "b", "baab", "bbbb" }) {
+			trie.insert(word, new Data(0));
+			pinned.add(word);
+		}
+
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch writersDone = new CountDownLatch(WRITERS);
+		final ArrayList<TreeSet<String>> owned = new ArrayList<TreeSet<String>>();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+
+		for(int w = 0; w < WRITERS; w++) {
+			final int writer = w;
+			final TreeSet<String> present = new TreeSet<String>();
+			owned.add(present);
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						start.await();
+						Random random = new Random(writer);
+						for(int i = 0; i < OPERATIONS; i++) {
+							// Words of 'a' and 'b', ending in this writer's own letter
+							String word = randomWord(random) + (char) ('c' + writer);
+							if(random.nextBoolean()) {
+								trie.insert(word, new Data(i));
+								present.add(word);
+								assertNotNull(word, trie.search(word));
+							} else {
+								assertEquals(word, present.remove(word), trie.delete(word));
+								assertNull(word, trie.search(word));
+							}
+						}
+					} catch(Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						writersDone.countDown();
+					}
+				}
+			});
+		}
+		for(int r = 0; r < READERS; r++) {
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						start.await();
+						while(writersDone.getCount() > 0) {
+							for(String word : pinned) {
+								assertNotNull(word, trie.search(word));
+							}
+							assertTrue(trie.autocomplete("").containsAll(pinned));
+						}
+					} catch(Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			});
+		}
+
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		if(failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+
+		// The final contents are exactly the pinned words and what the writers left behind
+		TreeSet<String> expected = new TreeSet<String>(pinned);
+		for(TreeSet<String> present : owned) {
+			expected.addAll(present);
+		}
+		assertEquals(new ArrayList<String>(expected), trie.autocomplete(""));
+	}
+
+	/**
+	 * A snapshot keeps seeing its own version while batches commit around it,
+	 * and a batch is only seen once it commits
+	 */
+	@Test
+	public void testSnapshots() {
+		VersionedTrie<Data> versioned = new VersionedTrie<Data>();
+		versioned.insert("do", new Data(1));	// Add the word 'do' on position 1
+		versioned.insert("dorm", new Data(4));	// Add the word 'dorm' on position 4
+
+		TrieSnapshot<Data> before = versioned.snapshot();
+		VersionedTrie<Data>.Batch batch = versioned.begin();
+		batch.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		batch.insert("dorm", new Data(9));		// Add the word 'dorm' again on position 9
+		assertTrue(batch.delete("do"));			// Delete the word 'do'
+		assertNotNull(batch.search("doll"));	// CHECK: the batch sees its own changes
+		TrieSnapshot<Data> during = versioned.snapshot();
+		assertNull(during.search("doll"));		// CHECK: nobody else does yet
+		during.close();
+		assertEquals(3, batch.commit());		// CHECK: the third version
+
+		TrieSnapshot<Data> after = versioned.snapshot();
+		assertEquals(Arrays.asList("do", "dorm"), before.autocomplete(""));		// CHECK: the old version
+		assertEquals(1, before.search("dorm").getPosition().size());				// CHECK: its Data is unchanged
+		assertEquals(Arrays.asList("doll", "dorm"), after.autocomplete("d"));	// CHECK: the new version
+		assertEquals(2, after.search("dorm").getPosition().size());				// CHECK: 'dorm' twice
+
+		batch = versioned.begin();
+		batch.insert("send", new Data(10));		// Add the word 'send' on position 10
+		batch.abort();							// But throw it away
+		assertNull(after.search("send"));		// CHECK: an aborted batch is not seen
+		assertEquals(3, versioned.getVersion());	// CHECK: nor counted as a version
+
+		before.close();
+		assertEquals(3, versioned.getOldestPinnedVersion());	// CHECK: the old version can be reclaimed
+		try {
+			before.search("do");
+			fail("A closed snapshot can't be read");
+		} catch(IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * A change that throws ends its batch, so the next writer doesn't wait forever
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailedBatchUnlocks() throws Exception {
+		final VersionedTrie<Data> versioned = new VersionedTrie<Data>();
+		try {
+			versioned.delete(null);				// Throws, with or without assertions
+			fail("A null word can't be deleted");
+		} catch(RuntimeException | AssertionError e) {
+			// Expected
+		}
+
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				versioned.insert("do", new Data(1));
+			}
+		});
+		writer.start();
+		writer.join(10000);
+		assertFalse(writer.isAlive());			// CHECK: the lock was given back
+		assertEquals(1, versioned.getVersion());	// CHECK: only the insert is a version
+	}
+
+	private static String randomWord(Random random) {
+		int length = random.nextInt(6);
+		StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < length; i++) {
+			builder.append(random.nextBoolean() ? 'a' : 'b');
+		}
+		return builder.toString();
+	}
+}
@@ -2,7 +2,23 @@ package nl.saxion.dna;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -65,6 +81,43 @@ public class TestTrie {
 		assertNull(trie.search("do"));			// Check: Word can't be found anymore
 	}
 	
+	/**
+	 * Testing that deleting a word leaves the words around it alone
+	 */
+	@Test
+	public void testDeleteKeepsOtherWords() {
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("doo", new Data(2));		// Add the word 'doo' on position 2
+		trie.insert("dox", new Data(3));		// Add the word 'dox' on position 3
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		
+		trie.delete("dor");						// Not a word, nothing happens
+		assertNotNull(trie.search("dorm"));		// Check: Word will be found
+		
+		trie.delete("dorm");					// Delete the longer word
+		assertNotNull(trie.search("do"));		// Check: Its prefix is still a word
+		
+		trie.delete("do");						// Delete the prefix
+		assertNotNull(trie.search("doo"));		// Check: Words under it will be found
+		assertNotNull(trie.search("dox"));		// Check: Words under it will be found
+		assertNull(trie.search("do"));			// Check: Word can't be found anymore
+	}
+	
+	/**
+	 * Tests searching for part of a word and for a region of a buffer
+	 */
+	@Test
+	public void testSearchRegion() {
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		
+		StringBuilder buffer = new StringBuilder("a dorm b");
+		assertEquals(4, trie.search(buffer, 2, 6).getPosition().get(0).intValue());	// CHECK: 'dorm' in the buffer
+		assertNull(trie.search(buffer, 2, 5));	// FAIL: 'dor' is only a prefix
+		assertNull(trie.search("dorms"));		// FAIL: 'dorms' is longer than any word
+		assertEquals(1, trie.autocomplete("dor").size());	// CHECK: 'dor' is a prefix of 'dorm'
+	}
+	
 	/**
 	 * Test the autocomplete feature
 	 */
@@ -86,6 +139,637 @@ public class TestTrie {
 		assertFalse(autocomplete.contains("sense"));	// FAIL: Sense was not expected
 	}
 	
+	/**
+	 * Test walking the autocomplete options page by page
+	 */
+	@Test
+	public void testCompletionPages() {
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		trie.insert("dork", new Data(8));		// Add the word 'dork' on position 8
+		trie.insert("send", new Data(9));		// Add the word 'send' on position 9
+		
+		ArrayList<String> page = new ArrayList<String>();
+		Iterator<String> iterator = trie.completions("do", null, 2);
+		while(iterator.hasNext()) {
+			page.add(iterator.next());
+		}
+		assertEquals(Arrays.asList("do", "doll"), page);		// CHECK: first page of 2
+		
+		page.clear();
+		iterator = trie.completions("do", "doll", 2);
+		while(iterator.hasNext()) {
+			page.add(iterator.next());
+		}
+		assertEquals(Arrays.asList("dork", "dorm"), page);		// CHECK: next page after 'doll'
+		
+		assertFalse(trie.completions("do", "dorm", 2).hasNext());	// CHECK: nothing after 'dorm'
+		assertEquals("dork", trie.completions("do", "dor", 2).next());	// CHECK: a cursor does not have to be a word
+		
+		assertEquals(Arrays.asList("dork", "dorm"), trie.completionStream("do", "doll", 2).collect(Collectors.toList()));	// CHECK: same page as a stream
+		assertEquals(Arrays.asList("doll", "dork"), trie.completionStream("do").filter(w -> w.length() == 4).limit(2).collect(Collectors.toList()));	// CHECK: filtered and limited lazily
+		assertEquals(0, trie.completionStream("x").count());								// FAIL: no words with 'x'
+	}
+	
+	/**
+	 * Tests the ordered navigation: first and last word, the words around
+	 * a key, ranges and the sorted set view
+	 */
+	@Test
+	public void testNavigation() {
+		assertNull(trie.firstKey());			// CHECK: empty trie has no first word
+		assertNull(trie.lastKey());				// CHECK: nor a last word
+		
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(2));		// Add the word 'dorm' on position 2
+		trie.insert("doll", new Data(3));		// Add the word 'doll' on position 3
+		trie.insert("dork", new Data(4));		// Add the word 'dork' on position 4
+		trie.insert("send", new Data(5));		// Add the word 'send' on position 5
+		
+		assertEquals("do", trie.firstKey());					// CHECK: first in alfabetical order
+		assertEquals("send", trie.lastKey());					// CHECK: last in alfabetical order
+		assertEquals("dork", trie.ceiling("dork"));				// CHECK: the key itself
+		assertEquals("dorm", trie.higher("dork"));				// CHECK: after the key
+		assertEquals("dork", trie.floor("dorka"));				// CHECK: a key does not have to be a word
+		assertEquals("do", trie.lower("doll"));					// CHECK: a prefix comes first
+		assertEquals("dorm", trie.lower("s"));					// CHECK: the last word under an earlier child
+		assertNull(trie.lower("do"));							// CHECK: nothing before the first word
+		assertNull(trie.higher("send"));						// CHECK: nothing after the last word
+		
+		ArrayList<String> words = new ArrayList<String>();
+		Iterator<String> iterator = trie.range("doll", "dorm");
+		while(iterator.hasNext()) {
+			words.add(iterator.next());
+		}
+		assertEquals(Arrays.asList("doll", "dork"), words);		// CHECK: from inclusive, to exclusive
+		
+		NavigableSet<String> set = trie.navigableKeySet();
+		assertEquals(5, set.size());							// CHECK: all words
+		assertTrue(set.contains("doll"));						// CHECK: a word
+		assertFalse(set.contains("dol"));						// CHECK: not a word
+		assertEquals(Arrays.asList("send", "dorm", "dork"),
+				new ArrayList<String>(set.descendingSet().headSet("doll", false)));	// CHECK: descending view
+		assertEquals("dork", set.subSet("doll", false, "dorm", false).first());		// CHECK: bounded view
+		
+		trie.insert("dot", new Data(6));		// The view follows the trie
+		assertEquals("dot", set.higher("dorm"));				// CHECK: a new word is in the view
+	}
+	
+	/**
+	 * Tests counting the words and occurrences under a prefix and finding
+	 * words by their place, also after a delete
+	 */
+	@Test
+	public void testCounts() {
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(2));		// Add the word 'dorm' on position 2
+		trie.insert("doll", new Data(3));		// Add the word 'doll' on position 3
+		trie.insert("dork", new Data(4));		// Add the word 'dork' on position 4
+		trie.insert("send", new Data(5));		// Add the word 'send' on position 5
+		trie.insert("dorm", new Data(6));		// 'dorm' on position 6 as well
+		trie.addPosition("send", 0, 4, 7);		// 'send' on position 7 as well
+		
+		assertEquals(5, trie.size());							// CHECK: 5 words
+		assertEquals(4, trie.countWords("do"));				// CHECK: do, doll, dork, dorm
+		assertEquals(2, trie.countWords("dor"));				// CHECK: a prefix may end halfway a label
+		assertEquals(0, trie.countWords("x"));					// CHECK: no words
+		assertEquals(5, trie.countOccurrences("do"));			// CHECK: 'dorm' twice
+		assertEquals(7, trie.countOccurrences(""));				// CHECK: all positions
+		
+		assertEquals("do", trie.wordAt(0));						// CHECK: first in alfabetical order
+		assertEquals("dorm", trie.wordAt(3));					// CHECK: fourth
+		assertEquals(2, trie.indexOf("dork"));					// CHECK: third
+		assertEquals(-1, trie.indexOf("dor"));					// CHECK: only a prefix
+		
+		trie.delete("dork");					// Delete a word
+		assertEquals(1, trie.countWords("dor"));				// CHECK: only 'dorm' left
+		assertEquals(3, trie.countOccurrences("dor") + trie.countOccurrences("dol"));	// CHECK: 2x and 1x
+		assertEquals("send", trie.wordAt(3));					// CHECK: the places move up
+		assertEquals(3, trie.navigableKeySet().subSet("dol", "t").size());				// CHECK: doll, dorm, send
+	}
+	
+	/**
+	 * Tests exporting the trie as text, TSV, JSON and a graph
+	 * @throws Exception
+	 */
+	@Test
+	public void testExport() throws Exception {
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(2));		// Add the word 'dorm' on position 2
+		trie.insert("dorm", new Data(3));		// 'dorm' on position 3 as well
+		trie.insert("send", new Data(4));		// Add the word 'send' on position 4
+		
+		StringWriter text = new StringWriter();
+		trie.export(TrieExporter.Format.TEXT, text);
+		assertEquals("d\n  o\n    rm\nsend\n", text.toString());					// CHECK: indented per level
+		assertEquals("\n" + text, trie.getRoot().prettyPrint(0));					// CHECK: the same as prettyPrint
+		
+		StringWriter tsv = new StringWriter();
+		trie.export(TrieExporter.Format.TSV, tsv);
+		assertEquals("word\tfrequency\ndo\t1\ndorm\t2\nsend\t1\n", tsv.toString());	// CHECK: alfabetical with frequency
+		
+		StringWriter json = new StringWriter();
+		trie.export(TrieExporter.Format.JSON, json);
+		assertEquals("{\n  \"do\": 1,\n  \"dorm\": 2,\n  \"send\": 1\n}\n", json.toString());	// CHECK: word to frequency
+		
+		String dot = trie.getRoot().toDotString();
+		assertTrue(dot.startsWith("digraph{\n"));									// CHECK: a graph
+		assertEquals(5, dot.split("label=").length - 1);							// CHECK: a node per node, with the root
+		assertEquals(4, dot.split("->").length - 1);								// CHECK: an edge per child
+	}
+	
+	/**
+	 * Tests finding words by text in the middle of them, with and without
+	 * the infix index, while words are inserted and deleted
+	 */
+	@Test
+	public void testContaining() {
+		trie.insert("dorm", new Data(1));		// Add the word 'dorm' on position 1
+		trie.insert("form", new Data(2));		// Add the word 'form' on position 2
+		trie.insert("normal", new Data(3));		// Add the word 'normal' on position 3
+		trie.insert("do", new Data(4));			// Add the word 'do' on position 4
+		
+		assertEquals(Arrays.asList("dorm", "form", "normal"), new ArrayList<String>(trie.containing("orm").keySet()));	// CHECK: scanned
+		trie.enableInfixIndex();
+		assertEquals(Arrays.asList("dorm", "form", "normal"), new ArrayList<String>(trie.containing("orm").keySet()));	// CHECK: indexed
+		assertEquals(3, trie.containing("ormal").get("normal").getPosition().get(0).intValue());		// CHECK: with its Data
+		assertEquals(Arrays.asList("do", "dorm"), new ArrayList<String>(trie.containing("Do").keySet()));		// CHECK: short and in uppercase
+		
+		trie.insert("storm", new Data(5));		// Add the word 'storm' on position 5
+		trie.delete("form");					// Delete the word 'form'
+		assertEquals(Arrays.asList("dorm", "normal", "storm"), new ArrayList<String>(trie.containing("orm").keySet()));	// CHECK: kept up to date
+		assertTrue(trie.containing("xyz").isEmpty());							// FAIL: in no word
+		assertEquals(4, trie.getInfixIndex().size());							// CHECK: every word once
+	}
+
+	/**
+	 * Tests finding phrases and words near each other on their positions
+	 */
+	@Test
+	public void testPhraseQuery() {
+		String[] text = { "send", "sense", "do", "send", "dorm", "sense", "send", "sense" };
+		for(int i = 0; i < text.length; i++) {
+			if(!trie.addPosition(text[i], 0, text[i].length(), i + 1)) {
+				trie.insert(text[i], new Data(i + 1));	// 'send sense do send dorm sense send sense' on 1 to 8
+			}
+		}
+
+		PhraseQuery phrase = PhraseQuery.phrase(trie, "Send sense");
+		assertTrue(phrase.next());
+		assertEquals(1, phrase.getStart());										// CHECK: 'send sense' on 1
+		assertEquals(2, phrase.getEnd());
+		assertTrue(phrase.next());
+		assertEquals(7, phrase.getStart());										// CHECK: and on 7, not 'send dorm sense' on 4
+		assertFalse(phrase.next());												// CHECK: nothing left
+		assertEquals(1, PhraseQuery.phrase(trie, "sense", "do", "send").count());	// CHECK: three words on 2
+		assertEquals(0, PhraseQuery.phrase(trie, "sense send sense do").count());	// FAIL: not in that order
+		assertEquals(0, PhraseQuery.phrase(trie, "send doll").count());			// FAIL: 'doll' is no word
+
+		PhraseQuery near = PhraseQuery.near(trie, 2, "sense", "dorm");
+		assertTrue(near.next());
+		assertEquals(5, near.getStart());										// CHECK: 'dorm sense' on 5 and 6
+		assertEquals(6, near.getEnd());
+		assertFalse(near.next());												// CHECK: 'sense' on 2 is 3 away from 'dorm'
+		assertEquals(3, PhraseQuery.near(trie, 1, "sense", "send").count());	// CHECK: 1-2, 6-7 and 7-8, in any order
+	}
+
+	/**
+	 * Test the autocomplete feature for the k most frequent words,
+	 * also after deleting the most frequent one
+	 */
+	@Test
+	public void testTopKAutocomplete() {
+		trie.insert("send", new Data(1));		// Add the word 'send' on position 1
+		trie.insert("sense", new Data(2));		// Add the word 'sense' on position 2
+		trie.insert("sent", new Data(3));		// Add the word 'sent' on position 3
+		trie.insert("do", new Data(4));			// Add the word 'do' on position 4
+		trie.addPosition("sense", 0, 5, 5);		// 'sense' on position 5 as well
+		trie.addPosition("sense", 0, 5, 6);		// 'sense' on position 6 as well
+		trie.addPosition("sent", 0, 4, 7);		// 'sent' on position 7 as well
+		trie.insert("do", new Data(8));			// 'do' on position 8 as well
+		trie.insert("do", new Data(9));			// 'do' on position 9 as well
+		trie.insert("do", new Data(10));		// 'do' on position 10 as well
+		
+		assertEquals(Arrays.asList("sense", "sent"), trie.autocomplete("s", 2));		// CHECK: 3x and 2x
+		assertEquals(Arrays.asList("do", "sense"), trie.autocomplete("", 2));			// CHECK: 4x and 3x
+		assertEquals(4, trie.getRoot().getMaxFrequency());								// CHECK: 'do' 4x
+		
+		trie.delete("sense");					// Delete the most frequent word under 's'
+		assertEquals(Arrays.asList("sent", "send"), trie.autocomplete("se", 5));		// CHECK: 2x and 1x
+		assertEquals(2, trie.getRoot().findNode('s').getMaxFrequency());				// CHECK: 'sent' 2x
+	}
+	
+	/**
+	 * Tests building a trie from sorted and from unsorted words,
+	 * which should give the same tree as inserting them
+	 */
+	@Test
+	public void testBulkLoad() {
+		String[] words = { "do", "doll", "dorm", "dorm", "send", "sense" };
+		TreeMap<String, Data> sorted = new TreeMap<String, Data>();
+		ArrayList<Map.Entry<String, Data>> entries = new ArrayList<Map.Entry<String, Data>>();
+		for(int i = 0; i < words.length; i++) {
+			trie.insert(words[i], new Data(i));
+			entries.add(new AbstractMap.SimpleEntry<String, Data>(words[i], new Data(i)));
+			sorted.put(words[i], new Data(i));
+		}
+		
+		Trie<Data> bulk = new Trie<Data>();
+		bulk.bulkLoad(entries.iterator());
+		assertEquals(trie.getRoot().prettyPrint(0), bulk.getRoot().prettyPrint(0));								// CHECK: same tree
+		assertEquals(Arrays.asList(2, 3), bulk.search("dorm").getPosition());				// CHECK: positions merged
+		assertEquals(2, bulk.getRoot().getMaxFrequency());								// CHECK: frequencies
+		
+		Collections.reverse(entries);
+		Trie<Data> unsorted = new Trie<Data>();
+		unsorted.bulkLoad(entries.iterator());
+		assertEquals(trie.getRoot().prettyPrint(0), unsorted.getRoot().prettyPrint(0));							// CHECK: same tree, unsorted
+
+		entries.clear();
+		for(int i = 0; i < words.length; i++) {
+			entries.add(new AbstractMap.SimpleEntry<String, Data>(words[i], new Data(i)));
+		}
+		entries.add(entries.remove(1));			// Sorted up to 'sense', then 'doll'
+		Trie<Data> partly = new Trie<Data>();
+		partly.bulkLoad(entries.iterator());
+		assertEquals(trie.getRoot().prettyPrint(0), partly.getRoot().prettyPrint(0));							// CHECK: same tree, sorted in part
+		assertEquals(Arrays.asList(2, 3), partly.search("dorm").getPosition());
+	}
+	
+	/**
+	 * Tests that cached autocomplete results only go when a word under them changes
+	 */
+	@Test
+	public void testPrefixCache() {
+		trie.enableCache(100, 1000);
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("send", new Data(8));		// Add the word 'send' on position 8
+		
+		assertEquals(Arrays.asList("dorm"), trie.autocomplete("do"));					// CHECK: walked the trie
+		assertEquals(Arrays.asList("send"), trie.autocomplete("se"));					// CHECK: walked the trie
+		trie.autocomplete("do").clear();												// Changing a result does not change the cache
+		assertEquals(Arrays.asList("dorm"), trie.autocomplete("do"));					// CHECK: from the cache
+		assertEquals(2, trie.getCache().getHits());
+		assertEquals(2, trie.getCache().getMisses());
+		
+		trie.insert("dorm", new Data(9));		// Same word again, the words stay the same
+		trie.insert("doll", new Data(7));		// New word under 'do' only
+		assertEquals(1, trie.getCache().getInvalidations());							// CHECK: 'se' stayed
+		assertEquals(Arrays.asList("doll", "dorm"), trie.autocomplete("do"));			// CHECK: sees the new word
+		
+		trie.delete("send");
+		assertEquals(new ArrayList<String>(), trie.autocomplete("se"));					// CHECK: sees the delete
+		assertEquals(2, trie.getCache().getInvalidations());
+	}
+	
+	/**
+	 * Tests counting the operations and the shape of the trie
+	 */
+	@Test
+	public void testMetrics() {
+		OperationMetrics metrics = new OperationMetrics();
+		trie.setMetrics(metrics);
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		trie.search("dorm");
+		trie.search("dor");
+		trie.autocomplete("do");
+		trie.delete("doll");
+		
+		assertEquals(3, metrics.getCount(TrieMetrics.Operation.INSERT));				// CHECK: every call counted
+		assertEquals(2, metrics.getCount(TrieMetrics.Operation.SEARCH));
+		assertEquals(1, metrics.getCount(TrieMetrics.Operation.AUTOCOMPLETE));
+		assertEquals(1, metrics.getCount(TrieMetrics.Operation.DELETE));
+		assertTrue(metrics.getHistogram(TrieMetrics.Operation.SEARCH).percentile(0.5) > 0);
+		
+		final ArrayList<String> keys = new ArrayList<String>();
+		trie.setMetrics(new TrieMetrics() {
+			public void record(Operation operation, CharSequence key, int start, int end, long nanos) {
+				keys.add(key.subSequence(start, end).toString());
+			}
+		});
+		trie.search("the dorm is", 4, 8);
+		assertEquals(Arrays.asList("dorm"), keys);										// CHECK: only the region searched
+		trie.setMetrics(null);
+		
+		// 'd' - 'o' with the words 'do' and 'rm'
+		TrieStatistics statistics = trie.statistics();
+		assertEquals(3, statistics.getNodes());											// CHECK: d, o, rm
+		assertEquals(2, statistics.getWords());											// CHECK: do, dorm
+		assertEquals(4, statistics.getMaxDepth());										// CHECK: dorm
+		assertEquals(4, statistics.getLabelBytes());									// CHECK: d + o + rm
+		assertEquals(1.0, statistics.getAverageFanOut(), 0.001);
+	}
+	
+	/**
+	 * Tests compacting the chains that are left after deleting words
+	 */
+	@Test
+	public void testCompact() {
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("dormant", new Data(5));	// Add the word 'dormant' on position 5
+		trie.insert("dormer", new Data(6));		// Add the word 'dormer' on position 6
+		trie.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		trie.delete("doll");
+		trie.delete("dorm");					// Leaves d - o - r - m - {ant, er}
+		
+		long before = trie.memoryFootprint().getTotal();
+		assertEquals(3, trie.compact());												// CHECK: o, r and m merged into d
+		assertEquals("dorm", trie.getRoot().findNode('d').getLabel());					// CHECK: one node 'dorm'
+		assertTrue(trie.memoryFootprint().getTotal() < before);							// CHECK: less heap
+		assertEquals(Arrays.asList("dormant", "dormer"), trie.autocomplete("do"));		// CHECK: same words
+		
+		trie.insert("dot", new Data(8));		// Splits 'dorm', its children go along
+		trie.insert("dorm", new Data(9));		// A word halfway 'dorm' again
+		assertEquals(Arrays.asList("dorm", "dormant", "dormer", "dot"), trie.autocomplete("do"));
+		assertEquals(5, trie.search("dormant").getPosition().get(0).intValue());
+		assertEquals(4, trie.memoryFootprint().getWords());
+
+		for(int pos = 10; pos < 15; pos++) {
+			trie.addPosition("dot", 0, 3, pos);	// Positions 8, 10, ... 14
+		}
+		trie.search("dot").freeze();			// A block with less than one skip entry
+		trie.compact();							// Trims it to the space it needs
+		for(int pos = 15; pos <= 200; pos++) {
+			trie.addPosition("dot", 0, 3, pos);	// Grows the block and its skips again
+		}
+		trie.search("dot").freeze();
+		assertEquals(192, trie.search("dot").frequency());							// CHECK: 1 + 5 + 186 positions
+		assertEquals(199, trie.search("dot").cursor().advance(199));					// CHECK: skips still work
+	}
+	
+	/**
+	 * Tests the off-heap trie against the same words as the Trie
+	 */
+	@Test
+	public void testOffHeapTrie() {
+		OffHeapTrie<Data> offHeap = new OffHeapTrie<Data>();
+		offHeap.insert("do", new Data(1));		// Add the word 'do' on position 1
+		offHeap.insert("dorm", new Data(4));	// Add the word 'dorm' on position 4
+		offHeap.insert("doll", new Data(7));	// Add the word 'doll' on position 7
+		offHeap.insert("Dorm", new Data(9));	// Add the word 'dorm' again on position 9
+		
+		assertEquals(Arrays.asList(4, 9), offHeap.search("dorm").getPosition());			// CHECK: positions merged
+		assertNull(offHeap.search("dor"));													// FAIL: 'dor' is only a prefix
+		assertEquals(Arrays.asList("do", "doll", "dorm"), offHeap.autocomplete("d"));		// CHECK: in order
+		
+		assertTrue(offHeap.delete("do"));
+		assertFalse(offHeap.delete("do"));													// It is gone already
+		assertTrue(offHeap.delete("doll"));													// Leaves only 'dorm', merged again
+		assertEquals(2, offHeap.getNodeCount());											// CHECK: root and 'dorm'
+		assertEquals(Arrays.asList("dorm"), offHeap.autocomplete(""));
+		
+		long bytes = offHeap.getOffHeapBytes();
+		long direct = directMemory();
+		offHeap.close();
+		assertEquals(0, offHeap.getOffHeapBytes());											// CHECK: holds no buffers anymore
+		assertTrue(directMemory() <= direct - bytes);										// CHECK: freed right away, not by the GC
+		offHeap.close();																	// Closing again does nothing
+		try {
+			offHeap.search("dorm");
+			fail("Closed trie can still be searched");
+		} catch(IllegalStateException e) {
+			// Expected
+		}
+	}
+	
+	/**
+	 * Gives back the bytes taken by the direct buffers of the JVM
+	 */
+	private static long directMemory() {
+		for(BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if(pool.getName().equals("direct")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Tests merging a trie into another, where their words overlap and where they don't
+	 */
+	@Test
+	public void testMergeFrom() {
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		
+		Trie<Data> other = new Trie<Data>();
+		other.insert("dorm", new Data(2));		// Same word, positions are combined
+		other.insert("doll", new Data(7));		// Splits below 'do'
+		other.insert("send", new Data(8));		// A subtree of its own, moved over as a whole
+		TrieNode<Data> send = other.getRoot().findNode('s');
+		
+		trie.mergeFrom(other, Data::merge);
+		assertEquals(Arrays.asList("do", "doll", "dorm", "send"), trie.autocomplete(""));	// CHECK: all words
+		assertEquals(Arrays.asList(2, 4), trie.search("dorm").getPosition());				// CHECK: positions combined
+		assertSame(send, trie.getRoot().findNode('s'));										// CHECK: not copied
+		assertEquals(2, trie.getRoot().getMaxFrequency());									// CHECK: 'dorm' 2x
+		assertTrue(other.autocomplete("").isEmpty());										// CHECK: other is empty now
+	}
+	
+	/**
+	 * Tests listing the words in alfabetical and in frequency order
+	 */
+	@Test
+	public void testListing() {
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("send", new Data(8));		// Add the word 'send' on position 8
+		trie.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		trie.addPosition("send", 0, 4, 9);		// 'send' on position 9 as well
+		
+		WordListing listing = trie.listing();
+		assertEquals(4, listing.size());
+		assertEquals("do", listing.getWord(0));		// CHECK: alfabetical
+		assertEquals("send", listing.getWord(3));
+		assertEquals(2, listing.getDepth(0));		// CHECK: 'do' is at depth 2 ('d', 'o')
+		
+		ArrayList<String> words = new ArrayList<String>();
+		for(int i : listing.byFrequency()) {
+			words.add(listing.getWord(i));
+		}
+		assertEquals(Arrays.asList("send", "do", "doll", "dorm"), words);	// CHECK: 2x first, then alfabetical
+		
+		for(int pos = 10; pos < 100; pos++) {
+			trie.addPosition("dorm", 0, 4, pos);	// 'dorm' far more often than there are words
+		}
+		words.clear();
+		listing = trie.listing();
+		for(int i : listing.byFrequency()) {
+			words.add(listing.getWord(i));
+		}
+		assertEquals(Arrays.asList("dorm", "send", "do", "doll"), words);	// CHECK: same order without a count per frequency
+	}
+	
+	/**
+	 * Test searching with typos
+	 */
+	@Test
+	public void testFuzzySearch() {
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		trie.insert("send", new Data(8));		// Add the word 'send' on position 8
+		
+		assertEquals(Arrays.asList("do", "dorm"), trie.fuzzySearch("drom", 2));	// CHECK: two edits for both
+		assertEquals(Arrays.asList("doll", "dorm"), trie.fuzzySearch("dolm", 1));	// CHECK: one replaced character
+		assertEquals(Arrays.asList("do"), trie.fuzzySearch("d", 1));				// CHECK: one inserted character
+		assertTrue(trie.fuzzySearch("xyz", 2).isEmpty());							// FAIL: nothing is that close
+		assertEquals(Arrays.asList("do", "doll", "dorm"), trie.fuzzyAutocomplete("dp", 1));	// CHECK: words starting with 'd?'
+		assertEquals(Arrays.asList("send"), trie.fuzzyAutocomplete("semd", 1));		// CHECK: a typo in a whole word
+	}
+	
+	/**
+	 * Tests a node with a wide fan-out, which switches the children
+	 * to the directly addressed table and back again
+	 */
+	@Test
+	public void testWideFanOut() {
+		String alphabet = "zyxwvutsrqponmlkjihgfedcba";
+		for(int i = 0; i < alphabet.length(); i++) {
+			trie.insert(alphabet.charAt(i) + "ump", new Data(i));	// Add 'zump', 'yump', ...
+		}
+		
+		assertEquals(26, trie.getRoot().getChildren().size());		// CHECK: 26 children under the root
+		assertEquals(0, trie.search("zump").getPosition().get(0).intValue());	// CHECK: position = 0
+		assertEquals(25, trie.search("aump").getPosition().get(0).intValue());	// CHECK: position = 25
+		assertEquals('a', trie.getRoot().getChildren().get(0).getStartCharacter());	// CHECK: children are in order
+		
+		for(int i = 0; i < 24; i++) {
+			trie.delete(alphabet.charAt(i) + "ump");				// Delete 'zump' down to 'cump'
+		}
+		assertEquals(2, trie.getRoot().getChildren().size());		// CHECK: 2 children left
+		assertNull(trie.search("zump"));							// Check: Word can't be found anymore
+		assertNotNull(trie.search("bump"));							// Check: Word will be found
+	}
+	
+	/**
+	 * Tests loading a corpus from a file
+	 * @throws Exception
+	 */
+	@Test
+	public void testCorpusLoader() throws Exception {
+		File file = File.createTempFile("corpus", ".txt");
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write("Ball bat\ndoll, ball\t\tBALL");	// 'doll,' is no word but counts as position 3
+		writer.close();
+		
+		CorpusLoader loader = new CorpusLoader(trie);
+		loader.load(file.getPath());
+		
+		assertEquals(5, loader.getPosition());					// CHECK: 5 tokens have been read
+		assertEquals(Arrays.asList(1, 4, 5), trie.search("ball").getPosition());	// CHECK: positions of 'ball'
+		assertEquals(2, trie.search("bat").getPosition().get(0).intValue());		// CHECK: position = 2
+		assertNull(trie.search("doll"));						// FAIL: 'doll,' has not been added
+	}
+	
+	/**
+	 * Tests loading a file on several threads, with the same positions as CorpusLoader
+	 */
+	@Test
+	public void testParallelCorpusLoader() throws Exception {
+		File file = File.createTempFile("corpus", ".txt");
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write("Ball bat\ndoll, ball\t\tBALL sense");	// 'doll,' is no word but counts as position 3
+		writer.close();
+		
+		trie.insert("send", new Data(0));		// Already there, the load has to add to it
+		ParallelCorpusLoader loader = new ParallelCorpusLoader(trie, 4);
+		loader.load(file.getPath());
+		loader.load(file.getPath());			// Positions continue after the first load
+		
+		assertEquals(12, loader.getPosition());											// CHECK: 2x 6 tokens have been read
+		assertEquals(Arrays.asList(1, 4, 5, 7, 10, 11), trie.search("ball").getPosition());	// CHECK: positions of 'ball'
+		assertEquals(Arrays.asList(6, 12), trie.search("sense").getPosition());			// CHECK: next to 'send'
+		assertNotNull(trie.search("send"));
+		assertNull(trie.search("doll"));												// FAIL: 'doll,' has not been added
+		assertEquals(6, trie.getRoot().getMaxFrequency());								// CHECK: 'ball' 6x
+	}
+	
+	/**
+	 * Tests storing positions compactly and walking them with a cursor
+	 */
+	@Test
+	public void testDataPositions() {
+		Data data = new Data(10);
+		for(int pos = 20; pos <= 1000; pos += 10) {
+			data.addPosition(pos);				// Positions 10, 20, ... 1000
+		}
+		data.freeze();							// Move them into the compact block
+		data.addPosition(1005);					// One in the tail
+		data.addPosition(15);					// One out of order, belongs in the block
+		
+		assertEquals(102, data.frequency());	// CHECK: 100 + 2 positions
+		assertEquals(15, data.getPosition().get(1).intValue());	// CHECK: kept in order
+		
+		PositionCursor cursor = data.cursor();
+		assertEquals(10, cursor.next());		// CHECK: first position
+		assertEquals(500, cursor.advance(495));	// CHECK: skip ahead to 500
+		assertEquals(1005, cursor.advance(1001));	// CHECK: skip into the tail
+		assertEquals(PositionCursor.END, cursor.advance(2000));	// CHECK: nothing left
+	}
+	
+	/**
+	 * Tests saving the Trie as a snapshot and searching the snapshot
+	 * @throws Exception
+	 */
+	@Test
+	public void testSaveAndOpen() throws Exception {
+		trie.insert("do", new Data(1));			// Add the word 'do' on position 1
+		trie.insert("dorm", new Data(4));		// Add the word 'dorm' on position 4
+		trie.insert("doll", new Data(7));		// Add the word 'doll' on position 7
+		trie.insert("dorm", new Data(9));		// Add the word 'dorm' on position 9
+		
+		File file = File.createTempFile("trie", ".bin");
+		file.deleteOnExit();
+		trie.save(file.toPath());
+		MappedTrie snapshot = Trie.open(file.toPath());
+		
+		assertTrue(snapshot.verify());											// CHECK: checksum is right
+		assertEquals(Arrays.asList(4, 9), snapshot.search("dorm").getPosition());	// CHECK: positions of 'dorm'
+		assertEquals(Arrays.asList("do", "doll", "dorm"), snapshot.autocomplete("do"));	// CHECK: all options
+		assertNull(snapshot.search("dor"));										// FAIL: 'dor' is only a prefix
+		assertEquals(0, snapshot.frequency("send"));							// FAIL: 'send' is not there
+	}
+
+	/**
+	 * Tests that changes survive reopening, through the log and through a checkpoint
+	 * @throws Exception
+	 */
+	@Test
+	public void testDurableTrie() throws Exception {
+		Path directory = Files.createTempDirectory("trie");
+		DurableTrie durable = new DurableTrie(directory);
+		durable.insert("dorm", 4);				// Add the word 'dorm' on position 4
+		durable.insert("Do", 1);				// Add the word 'do' on position 1
+		durable.insert("dorm", 9);				// Add the word 'dorm' on position 9
+		durable.delete("do");					// Delete the word 'do'
+		durable.close();
+
+		durable = new DurableTrie(directory);	// Replays the log
+		assertEquals(Arrays.asList(4, 9), durable.search("dorm").getPosition());	// CHECK: positions of 'dorm'
+		assertNull(durable.search("do"));											// FAIL: 'do' was deleted
+
+		durable.checkpoint();
+		durable.insert("doll", 7);				// Add the word 'doll' on position 7
+		durable.flush();
+		durable.close();
+
+		// A half written record at the end, as left by a crash
+		Path log = directory.resolve("log-" + durable.getGeneration());
+		Files.write(log, new byte[] { TrieLog.INSERT, 0, 0 }, StandardOpenOption.APPEND);
+
+		durable = new DurableTrie(directory);	// Reads the snapshot and replays the new log
+		assertEquals(Arrays.asList("doll", "dorm"), durable.autocomplete("do"));	// CHECK: all options
+		durable.insert("do", 2);
+		durable.close();
+		assertEquals(Arrays.asList("do", "doll", "dorm"), new DurableTrie(directory).autocomplete("do"));	// CHECK: damaged end was cut off
+	}
+
 	/**
 	 * Tests inserting null or empty objects
 	 * FAIL expected
@@ -1,10 +1,22 @@
 package nl.saxion.dna;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
 
 /**
  * A reduced (Trie) represents words with the help of a tree structure
@@ -18,6 +30,9 @@ import java.util.TreeSet;
 public class Trie<T> {
 
 	private TrieNode<T> root;					// The root-node
+	private PrefixCache cache;					// Results of autocomplete, null when not cached
+	private TrieMetrics metrics;				// Told how long operations take, null when not measured
+	private InfixIndex infix;					// The words by the text they contain, null when not indexed
 	
 	public Trie() {
 		root = new TrieNode<T>();
@@ -34,67 +49,215 @@ public class Trie<T> {
 		assert word != ""	: "Word is empty";
 		assert data != null	: "Data object is null";
 		
-		if(word != null && !word.isEmpty() && word.matches("[a-zA-Z]+")) {
-			root.insert(word.toLowerCase(), data);
+		if(word != null && !word.isEmpty() && isLetters(word)) {
+			long begin = metrics == null ? 0 : System.nanoTime();
+			String key = hasUpperCase(word) ? word.toLowerCase() : word;
+			if(cache != null || infix != null) {
+				// Only a new word changes what autocomplete and containing give back
+				TrieNode<T> node = locate(key, 0, key.length(), false);
+				if(node == null || !node.isWord()) {
+					if(cache != null) {
+						cache.invalidate(key);
+					}
+					if(infix != null) {
+						infix.add(key);
+					}
+				}
+			}
+			root.insert(key, data);
+			if(metrics != null) {
+				metrics.record(TrieMetrics.Operation.INSERT, key, 0, key.length(), System.nanoTime() - begin);
+			}
+			assert holdsWord(locate(key, 0, key.length(), false))	: "Word has not been added";
 		}
-		
-		assert search(word) != null	: "Word has not been added";
 	}
 	
 	/**
-	 * Search the Trie for a specific prefix
-	 * @param prefix
-	 * @return Data 	- The Data-object stored in the word
+	 * Adds many words at once. The words are built into the Trie in one pass,
+	 * without splitting any node; the result is the same as inserting them one
+	 * by one. Words that are not letters only are skipped. When the Trie is not
+	 * empty the words are inserted one by one. Words in alfabetical order go
+	 * straight into the tree, nothing is kept aside. From the first word that
+	 * is out of order on, the rest is gathered in a list; the words built so
+	 * far are taken back out, and all of them are sorted once and built again.
+	 * @param entries 	- The words with their Data-objects, preferably in alfabetical order
 	 */
-	public T search(String prefix) {
-		assert prefix != null	: "Prefix is null";
-		assert prefix != ""	: "prefix is empty";
-		
-		TrieNode<T> lastNode = root;
-		
-		// Trying to find a node of the last letter of the prefix
-		for(int i = 0; i < prefix.length(); i++) {
-			lastNode = lastNode.findNode(prefix.substring(i, i+1));
-			
-			// If there hasn't been found one, return 'null'
-			if(lastNode == null) {
-				return null;
+	public void bulkLoad(Iterator<? extends Map.Entry<String, T>> entries) {
+		if(root.getChildIndex().size() > 0) {
+			while(entries.hasNext()) {
+				Map.Entry<String, T> entry = entries.next();
+				insert(entry.getKey(), entry.getValue());
 			}
-			
-			String remaingstr = prefix.substring(i+1);
-			if(lastNode.getCharacters().equals(remaingstr)) {
-				break;
+			return;
+		}
+
+		if(cache != null) {
+			cache.clear();
+		}
+		TrieBuilder<T> builder = new TrieBuilder<T>(root);
+		ArrayList<Map.Entry<String, T>> rest = null;	// The words from the first one out of order on
+		String last = null;
+		while(entries.hasNext()) {
+			Map.Entry<String, T> entry = entries.next();
+			String word = entry.getKey();
+			assert word != null				: "Word is null";
+			assert entry.getValue() != null	: "Data object is null";
+			if(word == null || word.isEmpty() || !isLetters(word)) {
+				continue;
+			}
+			if(hasUpperCase(word)) {
+				word = word.toLowerCase();
+				entry = new AbstractMap.SimpleImmutableEntry<String, T>(word, entry.getValue());
+			}
+			if(rest == null && last != null && word.compareTo(last) < 0) {
+				rest = new ArrayList<Map.Entry<String, T>>();
+			}
+			if(rest == null) {
+				builder.add(word, entry.getValue());
+				last = word;
+			} else {
+				rest.add(entry);
+			}
+		}
+		builder.finish();
+		if(rest != null) {
+			// Take the words built so far back out, they came first and are sorted already
+			ArrayList<Map.Entry<String, T>> words = new ArrayList<Map.Entry<String, T>>();
+			collect(root, "", words);
+			words.addAll(rest);
+			rest = null;
+
+			// Stable, so the same words keep their order
+			Collections.sort(words, new Comparator<Map.Entry<String, T>>() {
+				public int compare(Map.Entry<String, T> a, Map.Entry<String, T> b) {
+					return a.getKey().compareTo(b.getKey());
+				}
+			});
+			root = new TrieNode<T>();
+			builder = new TrieBuilder<T>(root);
+			for(Map.Entry<String, T> entry : words) {
+				builder.add(entry.getKey(), entry.getValue());
 			}
+			builder.finish();
 		}
-		return lastNode.getData();
+		indexAll();
 	}
-	
+
 	/**
-	 * Deletes all characters from the prefix from the Trie
-	 * @param prefix
+	 * Adds the words under a node with their Data-objects, in alfabetical order
+	 * @param node 	- The node to start from
+	 * @param word 	- The word of the node
+	 * @param words - The list the words are added to
+	 */
+	private static <T> void collect(TrieNode<T> node, String word, ArrayList<Map.Entry<String, T>> words) {
+		if(node.isWord()) {
+			words.add(new AbstractMap.SimpleImmutableEntry<String, T>(word, node.getData()));
+		}
+		for(TrieNode<T> child : node.getChildIndex()) {
+			collect(child, word + child.getLabel(), words);
+		}
+	}
+
+	/**
+	 * Adds all words of another Trie to this one. Both trees are walked at the
+	 * same time: parts of the other tree that this one doesn't have are moved
+	 * over as a whole, labels are only split where the trees go different ways,
+	 * and a word in both gets its values combined, for example with Data::merge.
+	 * The time depends on the part the tries have in common, not on their size.
+	 * The nodes of the other Trie are taken over, so it is empty afterwards.
+	 * @param other 	- The Trie to take the words from
+	 * @param combiner 	- Gives the value of a word that is in both, from the value here and there
+	 */
+	public void mergeFrom(Trie<T> other, BinaryOperator<T> combiner) {
+		assert other != this	: "Trie merged with itself";
+		if(cache != null) {
+			cache.clear();
+		}
+		if(infix != null) {
+			CompletionIterator<T> words = new CompletionIterator<T>(other.root, null, Integer.MAX_VALUE);
+			while(words.hasNext()) {
+				infix.add(words.next());
+			}
+		}
+		root.mergeFrom(other.root, combiner);
+		other.root = new TrieNode<T>();
+		if(other.cache != null) {
+			other.cache.clear();
+		}
+		if(other.infix != null) {
+			other.infix.clear();
+		}
+	}
+
+	/**
+	 * Search the Trie for a specific word
+	 * @param word
+	 * @return Data 	- The Data-object stored in the word
 	 */
-	public void delete(String prefix) {
-		assert prefix != null	: "Prefix is null";
-		assert prefix != ""	: "prefix is empty";
+	public T search(CharSequence word) {
+		assert word != null	: "Prefix is null";
+		assert word.length() != 0	: "prefix is empty";
 		
-		TrieNode<T> lastNode = root;
+		return search(word, 0, word.length());
+	}
+	
+	/**
+	 * Search the Trie for the word in a region of a character sequence
+	 * This does not allocate anything, whether the word is found or not.
+	 * @param word
+	 * @param start 	- Index of the first character of the word
+	 * @param end 		- Index after the last character of the word
+	 * @return Data 	- The Data-object stored in the word
+	 */
+	public T search(CharSequence word, int start, int end) {
+		long begin = metrics == null ? 0 : System.nanoTime();
+		TrieNode<T> node = locate(word, start, end, false);
+		if(metrics != null) {
+			metrics.record(TrieMetrics.Operation.SEARCH, word, start, end, System.nanoTime() - begin);
+		}
+		return node == null ? null : node.getData();
+	}
+	
+	/**
+	 * Adds another position to a word that is already in the Trie, without
+	 * creating a new Data-object. The word is a region of a character sequence.
+	 * @param word
+	 * @param start 	- Index of the first character of the word
+	 * @param end 		- Index after the last character of the word
+	 * @param position 	- The position of the new occurrence
+	 * @return boolean 	- False if the word is not in the Trie (with a Data-object) yet
+	 */
+	public boolean addPosition(CharSequence word, int start, int end, int position) {
+		TrieNode<T> node = locate(word, start, end, false);
+		if(node == null || !(node.getData() instanceof Data)) {
+			return false;
+		}
+		node.addPosition(position);
+		return true;
+	}
+	
+	/**
+	 * Deletes a word from the Trie
+	 * @param word
+	 */
+	public void delete(CharSequence word) {
+		assert word != null	: "Prefix is null";
+		assert word.length() != 0	: "prefix is empty";
 		
-		// Trying to find a node of the last letter of the prefix
-		int i = 0;
-		for(; i < prefix.length(); i++) {
-			lastNode = lastNode.findNode(prefix.substring(i, i+1));
-			
-			// If there hasn't been found one, return 'null'
-			if(lastNode == null) {
-				return;
+		long begin = metrics == null ? 0 : System.nanoTime();
+		TrieNode<T> node = locate(word, 0, word.length(), false);
+		if(node != null && node.isWord()) {
+			if(cache != null) {
+				cache.invalidate(word.toString());
 			}
-			
-			String remaingstr = prefix.substring(i+1);
-			if(lastNode.getCharacters().equals(remaingstr)) {
-				break;
+			if(infix != null) {
+				infix.remove(word.toString());
 			}
+			node.delete();
+		}
+		if(metrics != null) {
+			metrics.record(TrieMetrics.Operation.DELETE, word, 0, word.length(), System.nanoTime() - begin);
 		}
-		lastNode.delete(prefix.substring(i));
 	}
 	
 	/**
@@ -102,10 +265,7 @@ public class Trie<T> {
 	 * Alfabetical order
 	 */
 	public void getAlfabeticalOrder() {
-		TreeMap<String, Integer> map = root.getAlfabeticalOrder(0);
-		for(String word : map.keySet()) {
-			System.out.println(map.get(word) + ": " + word);
-		}
+		WordListing.collect(root).printAlfabetical(System.out);
 	}
 	
 	/**
@@ -113,11 +273,16 @@ public class Trie<T> {
 	 * and sorts them based on their frequency
 	 */
 	public void getFrequencyOrder() { 
-		Map<String, Integer> map = root.getFrequencyOrder();
-		map = MapUtil.sortByValue( map );
-		for(String word : map.keySet()) {
-			System.out.println(word + ": " + map.get(word) + "x");
-		}
+		WordListing.collect(root).printFrequency(System.out);
+	}
+	
+	/**
+	 * Collects all the words in the Trie in alfabetical order, with their
+	 * frequency. Large tries are walked on all cores.
+	 * @return WordListing - The words
+	 */
+	public WordListing listing() {
+		return WordListing.collect(root);
 	}
 	
 	/**
@@ -125,31 +290,653 @@ public class Trie<T> {
 	 * @param prefix
 	 * @return List  - A list of all the options
 	 */
-	public ArrayList<String> autocomplete(String prefix) {
-		TrieNode<T> lastNode = root;
-		
-		// Trying to find a node of the last letter of the prefix
-		for(int i = 0; i < prefix.length(); i++) {
-			lastNode = lastNode.findNode(prefix.substring(i, i+1));
+	public ArrayList<String> autocomplete(CharSequence prefix) {
+		long begin = metrics == null ? 0 : System.nanoTime();
+		ArrayList<String> words = null;
+		String key = null;
+		if(cache != null) {
+			key = prefix.toString();
+			words = cache.get(key);
+		}
+		if(words == null) {
+			TrieNode<T> lastNode = locate(prefix, 0, prefix.length(), true);
+			words = lastNode == null ? new ArrayList<String>() : lastNode.autocomplete();
+			if(cache != null) {
+				cache.put(key, words);
+			}
+		}
+		if(metrics != null) {
+			metrics.record(TrieMetrics.Operation.AUTOCOMPLETE, prefix, 0, prefix.length(), System.nanoTime() - begin);
+		}
+		return words;
+	}
+	
+	/**
+	 * Puts a cache in front of autocomplete(prefix) for the prefixes asked
+	 * for most. Inserting or deleting a word only removes the prefixes of
+	 * that word from the cache.
+	 * @param maxEntries 	- The maximum amount of prefixes
+	 * @param maxWeight 	- The maximum amount of words in all results together
+	 */
+	public void enableCache(int maxEntries, long maxWeight) {
+		cache = new PrefixCache(maxEntries, maxWeight);
+	}
+	
+	/**
+	 * Keeps an index of the words by the text they contain, so containing()
+	 * doesn't have to look at every word. Inserting or deleting a word keeps
+	 * the index up to date.
+	 */
+	public void enableInfixIndex() {
+		infix = new InfixIndex();
+		indexAll();
+	}
+	
+	/**
+	 * Gives back the index behind containing()
+	 * @return InfixIndex - The index, null if it is not enabled
+	 */
+	public InfixIndex getInfixIndex() {
+		return infix;
+	}
+	
+	/**
+	 * Finds the words that contain a piece of text anywhere, with their
+	 * Data-objects. With the infix index only the words that can hold the
+	 * text are looked at, otherwise every word is.
+	 * @param text 			- The text to look for
+	 * @return SortedMap 	- The words with their Data-objects, in alfabetical order
+	 */
+	public SortedMap<String, T> containing(CharSequence text) {
+		String key = text.toString();
+		key = hasUpperCase(key) ? key.toLowerCase() : key;
+		TreeMap<String, T> found = new TreeMap<String, T>();
+		if(infix != null) {
+			for(String word : infix.find(key)) {
+				found.put(word, locate(word, 0, word.length(), false).getData());
+			}
+			return found;
+		}
+		CompletionIterator<T> words = new CompletionIterator<T>(root, null, Integer.MAX_VALUE);
+		while(words.hasNext()) {
+			String word = words.next();
+			if(word.contains(key)) {
+				found.put(word, locate(word, 0, word.length(), false).getData());
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Puts all words in the infix index, if it is enabled
+	 */
+	private void indexAll() {
+		if(infix != null) {
+			infix.clear();
+			CompletionIterator<T> words = new CompletionIterator<T>(root, null, Integer.MAX_VALUE);
+			while(words.hasNext()) {
+				infix.add(words.next());
+			}
+		}
+	}
+	
+	/**
+	 * Lets the metrics know how long each insert, search, delete and
+	 * autocomplete takes
+	 * @param metrics 	- The metrics, null to stop measuring
+	 */
+	public void setMetrics(TrieMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Gives back the metrics the operations are reported to
+	 * @return TrieMetrics - The metrics, null if nothing is measured
+	 */
+	public TrieMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Walks the Trie to count its nodes, words, depth, fan-out and label bytes
+	 * @return TrieStatistics - The shape of the Trie now
+	 */
+	public TrieStatistics statistics() {
+		return new TrieStatistics(root);
+	}
+	
+	/**
+	 * Merges every node that is no word and has one child with that child,
+	 * trims the child arrays and Data-objects and shares equal edge labels.
+	 * The words stay the same, the tree gets fewer and smaller nodes.
+	 * @return int - The amount of nodes that were merged away
+	 */
+	public int compact() {
+		return root.compact();
+	}
+	
+	/**
+	 * Estimates the heap the Trie retains, per category, per node and per word
+	 * @return MemoryFootprint - The report
+	 */
+	public MemoryFootprint memoryFootprint() {
+		return new MemoryFootprint(root);
+	}
+	
+	/**
+	 * Gives back the cache with its hit, miss and eviction counters
+	 * @return PrefixCache - The cache, null if it is not enabled
+	 */
+	public PrefixCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Walks the words with the given Prefix in alfabetical order, one at a time
+	 * @param prefix
+	 * @return Iterator - Gives the options only when they are asked for
+	 */
+	public Iterator<String> completions(CharSequence prefix) {
+		return completions(prefix, null, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Walks a page of the words with the given Prefix in alfabetical order,
+	 * for example the next 20 words after 'dorm'
+	 * @param prefix
+	 * @param after 	- Only words after this one are given, null to start at the beginning
+	 * @param limit 	- The maximum amount of words
+	 * @return Iterator - Gives the options only when they are asked for
+	 */
+	public Iterator<String> completions(CharSequence prefix, String after, int limit) {
+		TrieNode<T> lastNode = locate(prefix, 0, prefix.length(), true);
+		if(lastNode == null) {
+			return Collections.<String>emptyList().iterator();
+		}
+		return new CompletionIterator<T>(lastNode, after, limit);
+	}
+	
+	/**
+	 * Streams the words with the given Prefix in alfabetical order, like completions(prefix)
+	 * @param prefix
+	 * @return Stream 	- The options, found only when the stream asks for them
+	 */
+	public Stream<String> completionStream(CharSequence prefix) {
+		return completionStream(prefix, null, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Streams a page of the words with the given Prefix, like completions(prefix, after, limit)
+	 * @param prefix
+	 * @param after 	- Only words after this one are given, null to start at the beginning
+	 * @param limit 	- The maximum amount of words
+	 * @return Stream 	- The options, found only when the stream asks for them
+	 */
+	public Stream<String> completionStream(CharSequence prefix, String after, int limit) {
+		TrieNode<T> lastNode = locate(prefix, 0, prefix.length(), true);
+		if(lastNode == null) {
+			return Stream.empty();
+		}
+		return new CompletionIterator<T>(lastNode, after, limit).stream();
+	}
+	
+	/**
+	 * Builds a list of the k most frequent words with the given Prefix
+	 * @param prefix
+	 * @param k 	 - The amount of words wanted
+	 * @return List  - The most frequent options, most frequent first
+	 */
+	public ArrayList<String> autocomplete(CharSequence prefix, int k) {
+		long begin = metrics == null ? 0 : System.nanoTime();
+		TrieNode<T> lastNode = locate(prefix, 0, prefix.length(), true);
+		ArrayList<String> words = lastNode == null ? new ArrayList<String>() : lastNode.autocomplete(k);
+		if(metrics != null) {
+			metrics.record(TrieMetrics.Operation.AUTOCOMPLETE, prefix, 0, prefix.length(), System.nanoTime() - begin);
+		}
+		return words;
+	}
+
+	/**
+	 * Counts the words with the given prefix. Every node keeps the amount of
+	 * words under it, so only the prefix is walked.
+	 * @param prefix
+	 * @return int - The amount of words starting with the prefix
+	 */
+	public int countWords(CharSequence prefix) {
+		TrieNode<T> node = locate(prefix, 0, prefix.length(), true);
+		return node == null ? 0 : node.getWordCount();
+	}
+	
+	/**
+	 * Counts how often the words with the given prefix occur, all together.
+	 * Only the prefix is walked, like countWords.
+	 * @param prefix
+	 * @return long - The frequencies of the words starting with the prefix added up
+	 */
+	public long countOccurrences(CharSequence prefix) {
+		TrieNode<T> node = locate(prefix, 0, prefix.length(), true);
+		return node == null ? 0 : node.getOccurrences();
+	}
+	
+	/**
+	 * Gives back the amount of words in the Trie
+	 * @return int - The word count
+	 */
+	public int size() {
+		return root.getWordCount();
+	}
+	
+	/**
+	 * Gives back the word at a place in alfabetical order. On the way down the
+	 * children that come before are skipped with their word counts.
+	 * @param index 		- The place, starting at 0
+	 * @return String 		- The word
+	 * @throws IndexOutOfBoundsException - When there is no word at that place
+	 */
+	public String wordAt(int index) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		StringBuilder word = new StringBuilder();
+		TrieNode<T> node = root;
+		while(true) {
+			if(node.isWord()) {
+				if(index == 0) {
+					return word.toString();
+				}
+				index--;
+			}
+			TrieNode<T> next = null;
+			for(TrieNode<T> child : node.getChildIndex()) {
+				if(index < child.getWordCount()) {
+					next = child;
+					break;
+				}
+				index -= child.getWordCount();
+			}
+			word.append(next.getLabel());
+			node = next;
+		}
+	}
+	
+	/**
+	 * Gives back the place of a word in alfabetical order
+	 * @param word
+	 * @return int - The place, starting at 0, or -1 if the word is not in the Trie
+	 */
+	public int indexOf(CharSequence word) {
+		TrieNode<T> node = locate(word, 0, word.length(), false);
+		if(node == null || !node.isWord()) {
+			return -1;
+		}
+		return rank(word, false);
+	}
+	
+	/**
+	 * Counts the words that come before a key, or are the key itself
+	 * @param key
+	 * @param inclusive - Is the key itself counted
+	 * @return int 		- The amount of words
+	 */
+	int rank(CharSequence key, boolean inclusive) {
+		TrieNode<T> node = root;
+		int rank = 0;
+		int i = 0;
+		while(i < key.length()) {
+			// The word of the node is a prefix of the key, so it comes first
+			if(node.isWord()) {
+				rank++;
+			}
+			char c = key.charAt(i);
+			for(TrieNode<T> child : node.getChildIndex()) {
+				if(child.getStartCharacter() >= c) {
+					break;
+				}
+				rank += child.getWordCount();
+			}
+			TrieNode<T> child = node.findNode(c);
+			if(child == null) {
+				return rank;
+			}
 			
-			// If there hasn't been found one, return 'null'
-			if(lastNode == null) {
-				return new ArrayList<String>();
+			// Compare the rest of the label with the key
+			String characters = child.getCharacters();
+			int j = 0;
+			while(j < characters.length() && i + 1 + j < key.length() && characters.charAt(j) == key.charAt(i + 1 + j)) {
+				j++;
+			}
+			if(j < characters.length()) {
+				if(i + 1 + j < key.length() && characters.charAt(j) < key.charAt(i + 1 + j)) {
+					rank += child.getWordCount();
+				}
+				return rank;
+			}
+			i += 1 + characters.length();
+			node = child;
+		}
+		return inclusive && node.isWord() ? rank + 1 : rank;
+	}
+	
+	/**
+	 * Gives back the first word in alfabetical order
+	 * @return String - The first word, null if the Trie is empty
+	 */
+	public String firstKey() {
+		return ceiling("");
+	}
+	
+	/**
+	 * Gives back the last word in alfabetical order: the rightmost leaf
+	 * @return String - The last word, null if the Trie is empty
+	 */
+	public String lastKey() {
+		if(root.getChildIndex().size() == 0) {
+			return null;
+		}
+		StringBuilder word = new StringBuilder();
+		appendLast(root.getChildIndex().last(), word);
+		return word.toString();
+	}
+	
+	/**
+	 * Gives back the first word that is the same as or comes after the key
+	 * @param key
+	 * @return String - The word, null if there is none
+	 */
+	public String ceiling(String key) {
+		return next(key, true);
+	}
+	
+	/**
+	 * Gives back the first word that comes after the key
+	 * @param key
+	 * @return String - The word, null if there is none
+	 */
+	public String higher(String key) {
+		return next(key, false);
+	}
+	
+	/**
+	 * Gives back the last word that is the same as or comes before the key
+	 * @param key
+	 * @return String - The word, null if there is none
+	 */
+	public String floor(String key) {
+		return previous(key, true);
+	}
+	
+	/**
+	 * Gives back the last word that comes before the key
+	 * @param key
+	 * @return String - The word, null if there is none
+	 */
+	public String lower(String key) {
+		return previous(key, false);
+	}
+	
+	/**
+	 * Walks the words from one word up to another in alfabetical order, one at a time
+	 * @param from 		- The first word that may be given, null to start at the beginning
+	 * @param to 		- The walk stops before this word, null to go on to the end
+	 * @return Iterator - Gives the words only when they are asked for
+	 */
+	public Iterator<String> range(String from, String to) {
+		return new CompletionIterator<T>(root, from, true, to, false, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Gives back the words as a sorted set. The set is a view: it follows the
+	 * Trie and its navigation runs on the tree, nothing is copied.
+	 * @return NavigableSet - The words, in alfabetical order
+	 */
+	public NavigableSet<String> navigableKeySet() {
+		return new TrieKeySet<T>(this, null, false, null, false, false);
+	}
+	
+	private String next(String key, boolean inclusive) {
+		CompletionIterator<T> iterator = new CompletionIterator<T>(root, key, inclusive, null, false, 1);
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+	
+	/**
+	 * Walks down along the key. On the way the last word before the key is
+	 * the best one found so far: on every level a word is the node itself, or
+	 * the last word under the child just before the key, or under a child whose
+	 * label comes before the key. A deeper level always beats the ones above.
+	 */
+	private String previous(String key, boolean inclusive) {
+		StringBuilder word = new StringBuilder();
+		int bestLength = -1;						// Length of the word where the best one branches off
+		TrieNode<T> best = null;					// The subtree its last word is taken from, null for the node itself
+		TrieNode<T> node = root;
+		int i = 0;
+		while(i < key.length()) {
+			if(node.isWord()) {
+				bestLength = i;
+				best = null;
+			}
+			char c = key.charAt(i);
+			TrieNode<T> before = node.getChildIndex().lower(c, false);
+			if(before != null) {
+				bestLength = i;
+				best = before;
+			}
+			TrieNode<T> child = node.findNode(c);
+			if(child == null) {
+				break;
 			}
 			
-			String remaingstr = prefix.substring(i+1);
-			if(lastNode.getCharacters().equals(remaingstr)) {
+			// Compare the rest of the label with the key
+			String characters = child.getCharacters();
+			int j = 0;
+			while(j < characters.length() && i + 1 + j < key.length() && characters.charAt(j) == key.charAt(i + 1 + j)) {
+				j++;
+			}
+			if(j < characters.length()) {
+				if(i + 1 + j < key.length() && characters.charAt(j) < key.charAt(i + 1 + j)) {
+					// Every word under the child comes before the key
+					bestLength = i;
+					best = child;
+				}
 				break;
 			}
+			word.append(c).append(characters);
+			i += 1 + characters.length();
+			node = child;
+		}
+		if(inclusive && i == key.length() && node.isWord()) {
+			return key;
+		}
+		if(bestLength < 0) {
+			return null;
 		}
-		return lastNode.autocomplete();
+		word.setLength(bestLength);
+		if(best != null) {
+			appendLast(best, word);
+		}
+		return word.toString();
+	}
+	
+	/**
+	 * Adds the label of a node and of its last child, down to a leaf
+	 */
+	private static <T> void appendLast(TrieNode<T> node, StringBuilder word) {
+		word.append(node.getLabel());
+		while(node.getChildIndex().size() > 0) {
+			node = node.getChildIndex().last();
+			word.append(node.getLabel());
+		}
+	}
+	
+	/**
+	 * Builds a list of the words that are at most maxEdits typos away from the query.
+	 * A typo is an inserted, deleted or replaced character (Levenshtein distance).
+	 * @param query
+	 * @param maxEdits 	- The maximum amount of typos
+	 * @return List  	- The words found, in alfabetical order
+	 */
+	public ArrayList<String> fuzzySearch(CharSequence query, int maxEdits) {
+		return fuzzy(query, maxEdits, false);
+	}
+
+	/**
+	 * Builds a list of the words that start with something at most maxEdits
+	 * typos away from the prefix, for example 'dorm' and 'doll' for 'dp'
+	 * @param prefix
+	 * @param maxEdits 	- The maximum amount of typos
+	 * @return List  	- The options, in alfabetical order
+	 */
+	public ArrayList<String> fuzzyAutocomplete(CharSequence prefix, int maxEdits) {
+		return fuzzy(prefix, maxEdits, true);
+	}
+
+	private ArrayList<String> fuzzy(CharSequence query, int maxEdits, boolean prefix) {
+		assert query != null	: "Query is null";
+		assert maxEdits >= 0	: "maxEdits is negative";
+
+		String key = query.toString();
+		if(prefix && key.length() <= maxEdits) {
+			// Deleting the whole prefix is within the budget
+			return root.autocomplete();
+		}
+
+		// The first row of the table: the query against the empty word
+		int[] row = new int[key.length() + 1];
+		for(int j = 0; j < row.length; j++) {
+			row[j] = j;
+		}
+		ArrayList<int[]> rows = new ArrayList<int[]>();
+		rows.add(row);
+		ArrayList<String> words = new ArrayList<String>();
+		root.fuzzy(key, maxEdits, prefix, rows, new StringBuilder(), words);
+		return words;
+	}
+
+	/**
+	 * Walks down the trie along a region of a character sequence. Children are
+	 * found on their starting character and the remaining characters of each
+	 * node are matched in place, so no Strings are created on the way.
+	 * @param key
+	 * @param start 	- Index of the first character of the key
+	 * @param end 		- Index after the last character of the key
+	 * @param prefix 	- If the key may end halfway the characters of a node
+	 * @return TrieNode - The node spelling the key (or starting with it), null if there is none
+	 */
+	private TrieNode<T> locate(CharSequence key, int start, int end, boolean prefix) {
+		TrieNode<T> node = root;
+		int i = start;
+		while(i < end) {
+			node = node.findNode(key.charAt(i++));
+			
+			// If there hasn't been found one, return 'null'
+			if(node == null) {
+				return null;
+			}
+			
+			// Match the remaining characters of the node
+			String characters = node.getCharacters();
+			int length = Math.min(characters.length(), end - i);
+			for(int j = 0; j < length; j++) {
+				if(characters.charAt(j) != key.charAt(i + j)) {
+					return null;
+				}
+			}
+			if(length < characters.length() && !prefix) {
+				return null;
+			}
+			i += length;
+		}
+		return node;
+	}
+	
+	/**
+	 * Checks if a node has been found and holds a word. Unlike search() this
+	 * is not measured, so the checks on insert leave the metrics alone.
+	 */
+	private static boolean holdsWord(TrieNode<?> node) {
+		return node != null && node.getData() != null;
+	}
+	
+	/**
+	 * Checks if the word only consists of the letters a-z and A-Z
+	 */
+	static boolean isLetters(String word) {
+		for(int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if((c < 'a' || c > 'z') && (c < 'A' || c > 'Z')) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks if the word contains a capital, so lowercasing can be skipped otherwise
+	 */
+	static boolean hasUpperCase(String word) {
+		for(int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if(c >= 'A' && c <= 'Z') {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Writes a binary snapshot of the Trie, which can be opened again with open(Path)
+	 * Only words with a Data-object can be saved.
+	 * @param path 			- The snapshot file
+	 * @throws IOException 	- When the file can't be written
+	 */
+	public void save(Path path) throws IOException {
+		MappedTrie.write(root, path);
+	}
+	
+	/**
+	 * Opens a snapshot written by save(Path). The file is memory-mapped and
+	 * searched directly, without building the trie again.
+	 * @param path 			- The snapshot file
+	 * @return MappedTrie 	- A read-only trie served from the file
+	 * @throws IOException 	- When the file can't be read or is no snapshot
+	 */
+	public static MappedTrie open(Path path) throws IOException {
+		return new MappedTrie(path);
+	}
+	
+	/**
+	 * Writes the Trie as a graph, indented text or a list of words with their frequency
+	 * @param format 		- The format to write
+	 * @param writer 		- Where to write to, it is flushed but not closed
+	 * @throws IOException 	- When writing fails
+	 */
+	public void export(TrieExporter.Format format, Writer writer) throws IOException {
+		TrieExporter.export(root, format, writer);
+	}
+	
+	/**
+	 * Writes the Trie as UTF-8, like export(Format, Writer)
+	 * @param format 		- The format to write
+	 * @param channel 		- Where to write to, for example a FileChannel. It is not closed.
+	 * @throws IOException 	- When writing fails
+	 */
+	public void export(TrieExporter.Format format, WritableByteChannel channel) throws IOException {
+		TrieExporter.export(root, format, channel);
 	}
 	
 	/**
 	 * Prints the Trie in a nice way
 	 */
 	public void prettyPrint() {
-		System.out.println(root.prettyPrint(0));
+		try {
+			Writer out = new OutputStreamWriter(System.out);
+			out.write('\n');
+			export(TrieExporter.Format.TEXT, out);
+			out.write('\n');
+			out.flush();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 	
 	/**
@@ -0,0 +1,103 @@
+package nl.saxion.dna;
+
+import java.util.ArrayList;
+
+/**
+ * Builds a trie from words that come in alfabetical order, in one pass.
+ *
+ * Where a word goes only depends on how many characters it shares with the
+ * word before it and the word after it (the longest common prefixes). Up to
+ * the longest of the two, the characters are shared with other words and
+ * get a node each; the rest of the word is kept in a single leaf. So every
+ * word is held back until the next one is known, and then its nodes are
+ * created with their final characters: nothing is ever split afterwards.
+ * The result is the same tree as inserting the words one by one.
+ *
+ * @author Idmon & Emre
+ * @param <T> Data structure
+ */
+class TrieBuilder<T> {
+
+	private ArrayList<TrieNode<T>> path;			// Nodes of the last word placed, one per character
+	private String pending;							// The word waiting for the next one
+	private T pendingData;							// Its Data-object
+	private int shared;								// Characters it shares with the word before it
+
+	/**
+	 * Constructor for a builder that adds to an empty root
+	 * @param root - The root-node, without children
+	 */
+	TrieBuilder(TrieNode<T> root) {
+		path = new ArrayList<TrieNode<T>>();
+		path.add(root);
+	}
+
+	/**
+	 * Adds a word, which may not come before the previous one
+	 * @param word 	- The word, lowercase letters only
+	 * @param data 	- Its Data-object
+	 */
+	void add(String word, T data) {
+		if(pending == null) {
+			pending = word;
+			pendingData = data;
+			return;
+		}
+		if(word.equals(pending)) {
+			// The same word again, merge it like insert does
+			if(pendingData instanceof Data && data instanceof Data) {
+				((Data) pendingData).addAll((Data) data);
+			} else {
+				pendingData = data;
+			}
+			return;
+		}
+
+		int next = commonPrefix(pending, word);
+		place(pending, pendingData, Math.max(shared, next));
+		pending = word;
+		pendingData = data;
+		shared = next;
+	}
+
+	/**
+	 * Places the last word, after which the trie is complete
+	 */
+	void finish() {
+		if(pending != null) {
+			place(pending, pendingData, shared);
+			pending = null;
+			pendingData = null;
+		}
+	}
+
+	/**
+	 * Places a word: a node per character for the first 'depth' characters,
+	 * then one leaf with the rest
+	 * @param depth - Characters the word shares with its neighbours
+	 */
+	private void place(String word, T data, int depth) {
+		// The nodes it shares with the word before it are on the path already
+		while(path.size() > shared + 1) {
+			path.remove(path.size() - 1);
+		}
+		for(int i = shared; i < depth; i++) {
+			path.add(path.get(i).append(word.charAt(i), ""));
+		}
+		if(depth == word.length()) {
+			// The next word continues after this one
+			path.get(depth).setWord(data);
+		} else {
+			path.get(depth).append(word.charAt(depth), word.substring(depth + 1)).setWord(data);
+		}
+	}
+
+	private static int commonPrefix(String a, String b) {
+		int length = Math.min(a.length(), b.length());
+		int i = 0;
+		while(i < length && a.charAt(i) == b.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,236 @@
+package nl.saxion.dna;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the tree under a node to a Writer or a channel, in one of these formats:
+ * - DOT: a graph for Graphviz, words are filled green
+ * - TEXT: a line per node with its label, indented two spaces per level
+ * - TSV: a line per word with its frequency, in alfabetical order, after a header
+ * - JSON: an object with every word as a key and its frequency as the value
+ *
+ * The output is streamed: the tree is walked with a stack of its own, as deep
+ * as the tree and no wider, and written through a buffer. So the time is
+ * linear in the size of the output and the extra memory does not depend on
+ * the amount of words. Words only hold the letters a-z, so nothing has to be
+ * escaped. The trie should not be changed while it is exported.
+ *
+ * @author Idmon & Emre
+ */
+public class TrieExporter {
+
+	/**
+	 * The formats a tree can be written in
+	 */
+	public enum Format {
+		DOT, TEXT, TSV, JSON
+	}
+
+	private static final int BUFFER = 1 << 16;		// Characters written at once
+
+	private TrieExporter() {
+	}
+
+	/**
+	 * Writes the tree under a node. The writer is flushed, not closed.
+	 * @param node 			- The node to start from, usually the root of a trie
+	 * @param format 		- The format to write
+	 * @param writer 		- Where to write to
+	 * @throws IOException 	- When writing fails
+	 */
+	public static <T> void export(TrieNode<T> node, Format format, Writer writer) throws IOException {
+		Writer out = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, BUFFER);
+		switch(format) {
+			case DOT:
+				dot(node, out);
+				break;
+			case TEXT:
+				text(node, 0, out);
+				break;
+			case TSV:
+				tsv(node, out);
+				break;
+			case JSON:
+				json(node, out);
+				break;
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the tree under a node as UTF-8. The channel is not closed.
+	 * @param node 			- The node to start from, usually the root of a trie
+	 * @param format 		- The format to write
+	 * @param channel 		- Where to write to
+	 * @throws IOException 	- When writing fails
+	 */
+	public static <T> void export(TrieNode<T> node, Format format, WritableByteChannel channel) throws IOException {
+		export(node, format, Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER));
+	}
+
+	/**
+	 * All nodes first and then all edges, both in the order of the walk
+	 */
+	private static <T> void dot(TrieNode<T> node, Writer out) throws IOException {
+		out.write("digraph{\n");
+		Walk<T> walk = new Walk<T>(node);
+		while(walk.next()) {
+			TrieNode<T> current = walk.node();
+			out.write('n');
+			out.write(Integer.toString(current.getNumber()));
+			out.write("[label=\"");
+			out.write(current.getLabel());
+			out.write(current.isWord() ? "\",fillcolor=\"palegreen\",style=\"filled,rounded\"];\n" : "\"];\n");
+		}
+		walk = new Walk<T>(node);
+		walk.next();
+		while(walk.next()) {
+			out.write('n');
+			out.write(Integer.toString(walk.parent().getNumber()));
+			out.write("->n");
+			out.write(Integer.toString(walk.node().getNumber()));
+			out.write(";\n");
+		}
+		out.write('}');
+	}
+
+	/**
+	 * A line per node under the first one, as TrieNode.prettyPrint has them
+	 * @param indent - Spaces before the children of the first node
+	 */
+	static <T> void text(TrieNode<T> node, int indent, Writer out) throws IOException {
+		Walk<T> walk = new Walk<T>(node);
+		walk.next();
+		while(walk.next()) {
+			for(int i = indent + 2 * (walk.depth() - 1); i > 0; i--) {
+				out.write(' ');
+			}
+			out.write(walk.node().getLabel());
+			out.write('\n');
+		}
+	}
+
+	private static <T> void tsv(TrieNode<T> node, Writer out) throws IOException {
+		out.write("word\tfrequency\n");
+		Walk<T> walk = new Walk<T>(node);
+		while(walk.next()) {
+			if(walk.node().isWord()) {
+				out.append(walk.word());
+				out.write('\t');
+				out.write(Integer.toString(walk.node().getFrequency()));
+				out.write('\n');
+			}
+		}
+	}
+
+	private static <T> void json(TrieNode<T> node, Writer out) throws IOException {
+		out.write('{');
+		boolean first = true;
+		Walk<T> walk = new Walk<T>(node);
+		while(walk.next()) {
+			if(walk.node().isWord()) {
+				out.write(first ? "\n  \"" : ",\n  \"");
+				out.append(walk.word());
+				out.write("\": ");
+				out.write(Integer.toString(walk.node().getFrequency()));
+				first = false;
+			}
+		}
+		out.write(first ? "}\n" : "\n}\n");
+	}
+
+	/**
+	 * Visits every node under a node in alfabetical order, a node before its
+	 * children. Like the CompletionIterator it keeps a stack with a node per
+	 * level and the character of the child to visit next, and builds the
+	 * words in one shared buffer.
+	 */
+	private static class Walk<T> {
+		private TrieNode<T> start;					// The node the walk starts at, null once visited
+		private TrieNode<T>[] nodes;				// Stack of nodes being walked
+		private char[] next;						// Per node: character of the next child to visit
+		private boolean[] inclusive;				// Per node: may that child start with 'next' itself
+		private int[] lengths;						// Per node: length of the buffer before its label
+		private int depth;							// Amount of nodes on the stack
+		private StringBuilder word;					// The word of the node on top of the stack
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private Walk(TrieNode<T> start) {
+			this.start = start;
+			nodes = (TrieNode<T>[]) new TrieNode[16];
+			next = new char[16];
+			inclusive = new boolean[16];
+			lengths = new int[16];
+			word = new StringBuilder(start.toString());
+		}
+
+		/**
+		 * Moves to the next node
+		 * @return boolean - False when every node has been visited
+		 */
+		private boolean next() {
+			if(start != null) {
+				push(start, 0);
+				start = null;
+				return true;
+			}
+			while(depth > 0) {
+				int top = depth - 1;
+				TrieNode<T> child = nodes[top].getChildIndex().higher(next[top], inclusive[top]);
+				if(child == null) {
+					// All children have been visited, go back up
+					word.setLength(lengths[top]);
+					nodes[top] = null;
+					depth--;
+					continue;
+				}
+				next[top] = child.getStartCharacter();
+				inclusive[top] = false;
+				int length = word.length();
+				word.append(child.getStartCharacter()).append(child.getCharacters());
+				push(child, length);
+				return true;
+			}
+			return false;
+		}
+
+		private TrieNode<T> node() {
+			return nodes[depth - 1];
+		}
+
+		private TrieNode<T> parent() {
+			return nodes[depth - 2];
+		}
+
+		/**
+		 * Levels below the node the walk started at
+		 */
+		private int depth() {
+			return depth - 1;
+		}
+
+		private CharSequence word() {
+			return word;
+		}
+
+		private void push(TrieNode<T> node, int length) {
+			if(depth == nodes.length) {
+				nodes = Arrays.copyOf(nodes, depth * 2);
+				next = Arrays.copyOf(next, depth * 2);
+				inclusive = Arrays.copyOf(inclusive, depth * 2);
+				lengths = Arrays.copyOf(lengths, depth * 2);
+			}
+			nodes[depth] = node;
+			next[depth] = 0;
+			inclusive[depth] = true;
+			lengths[depth] = length;
+			depth++;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package nl.saxion.dna;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * The words of a Trie as a sorted set, like the key set of a TreeMap. It is a
+ * view: it follows the Trie and every lookup runs on the tree, so nothing is
+ * copied. A view can be limited to a range of words and can be descending.
+ *
+ * The set can only be read, words are added and deleted through the Trie.
+ * The bounds are kept in alfabetical order, whatever the order of the view.
+ *
+ * @author Idmon & Emre
+ * @param <T> Data structure
+ */
+public class TrieKeySet<T> extends AbstractSet<String> implements NavigableSet<String> {
+
+	private Trie<T> trie;
+	private String low;								// Lowest word in the view, null for no bound
+	private boolean lowInclusive;					// May 'low' itself be in the view
+	private String high;							// Highest word in the view, null for no bound
+	private boolean highInclusive;					// May 'high' itself be in the view
+	private boolean descending;						// Is the view in reverse order
+
+	/**
+	 * Constructor for a view on the words of a Trie
+	 * @param trie 				- The Trie to view
+	 * @param low 				- Lowest word in the view, null for no bound
+	 * @param lowInclusive 		- May 'low' itself be in the view
+	 * @param high 				- Highest word in the view, null for no bound
+	 * @param highInclusive 	- May 'high' itself be in the view
+	 * @param descending 		- Is the view in reverse order
+	 */
+	TrieKeySet(Trie<T> trie, String low, boolean lowInclusive, String high, boolean highInclusive, boolean descending) {
+		this.trie = trie;
+		this.low = low;
+		this.lowInclusive = lowInclusive;
+		this.high = high;
+		this.highInclusive = highInclusive;
+		this.descending = descending;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return descending ? downwards() : upwards();
+	}
+
+	@Override
+	public Iterator<String> descendingIterator() {
+		return descending ? upwards() : downwards();
+	}
+
+	/**
+	 * Counts the words in the view from the word counts of the nodes along
+	 * the bounds, without walking the words themselves
+	 */
+	@Override
+	public int size() {
+		int from = low == null ? 0 : trie.rank(low, !lowInclusive);
+		int to = high == null ? trie.size() : trie.rank(high, highInclusive);
+		return Math.max(0, to - from);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return lowest() == null;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if(!(o instanceof String)) {
+			return false;
+		}
+		String word = (String) o;
+		return inRange(word) && word.equals(trie.ceiling(word));
+	}
+
+	@Override
+	public boolean add(String word) {
+		throw new UnsupportedOperationException("Insert words through the Trie");
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException("Delete words through the Trie");
+	}
+
+	@Override
+	public String pollFirst() {
+		throw new UnsupportedOperationException("Delete words through the Trie");
+	}
+
+	@Override
+	public String pollLast() {
+		throw new UnsupportedOperationException("Delete words through the Trie");
+	}
+
+	@Override
+	public Comparator<? super String> comparator() {
+		return descending ? Collections.<String>reverseOrder() : null;
+	}
+
+	@Override
+	public String first() {
+		return exists(descending ? highest() : lowest());
+	}
+
+	@Override
+	public String last() {
+		return exists(descending ? lowest() : highest());
+	}
+
+	@Override
+	public String lower(String word) {
+		return descending ? higherWord(word) : lowerWord(word);
+	}
+
+	@Override
+	public String floor(String word) {
+		return descending ? ceilingWord(word) : floorWord(word);
+	}
+
+	@Override
+	public String ceiling(String word) {
+		return descending ? floorWord(word) : ceilingWord(word);
+	}
+
+	@Override
+	public String higher(String word) {
+		return descending ? lowerWord(word) : higherWord(word);
+	}
+
+	@Override
+	public NavigableSet<String> descendingSet() {
+		return new TrieKeySet<T>(trie, low, lowInclusive, high, highInclusive, !descending);
+	}
+
+	@Override
+	public NavigableSet<String> subSet(String from, boolean fromInclusive, String to, boolean toInclusive) {
+		int compare = from.compareTo(to);
+		if(descending ? compare < 0 : compare > 0) {
+			throw new IllegalArgumentException("From comes after to");
+		}
+		return descending ? view(to, toInclusive, from, fromInclusive) : view(from, fromInclusive, to, toInclusive);
+	}
+
+	@Override
+	public NavigableSet<String> headSet(String to, boolean inclusive) {
+		return descending ? view(to, inclusive, null, false) : view(null, false, to, inclusive);
+	}
+
+	@Override
+	public NavigableSet<String> tailSet(String from, boolean inclusive) {
+		return descending ? view(null, false, from, inclusive) : view(from, inclusive, null, false);
+	}
+
+	@Override
+	public SortedSet<String> subSet(String from, String to) {
+		return subSet(from, true, to, false);
+	}
+
+	@Override
+	public SortedSet<String> headSet(String to) {
+		return headSet(to, false);
+	}
+
+	@Override
+	public SortedSet<String> tailSet(String from) {
+		return tailSet(from, true);
+	}
+
+	/**
+	 * Builds a smaller view, with new bounds in alfabetical order. A bound that
+	 * is null stays as it is, a new bound must lie within the old ones.
+	 */
+	private TrieKeySet<T> view(String from, boolean fromInclusive, String to, boolean toInclusive) {
+		if(from != null && !inRange(from, fromInclusive)) {
+			throw new IllegalArgumentException("From is out of range");
+		}
+		if(to != null && !inRange(to, toInclusive)) {
+			throw new IllegalArgumentException("To is out of range");
+		}
+		return new TrieKeySet<T>(trie,
+				from == null ? low : from, from == null ? lowInclusive : fromInclusive,
+				to == null ? high : to, to == null ? highInclusive : toInclusive, descending);
+	}
+
+	/**
+	 * Walks the view from the lowest word up, on the tree itself
+	 */
+	private Iterator<String> upwards() {
+		return new CompletionIterator<T>(trie.getRoot(), low, lowInclusive, high, highInclusive, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Walks the view from the highest word down, one lower() at a time
+	 */
+	private Iterator<String> downwards() {
+		return new Iterator<String>() {
+			private String next = highest();
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public String next() {
+				String word = exists(next);
+				next = lowerWord(word);
+				return word;
+			}
+		};
+	}
+
+	// The words in alfabetical order, limited to the bounds
+
+	private String lowest() {
+		String word = low == null ? trie.firstKey() : lowInclusive ? trie.ceiling(low) : trie.higher(low);
+		return word == null || tooHigh(word) ? null : word;
+	}
+
+	private String highest() {
+		String word = high == null ? trie.lastKey() : highInclusive ? trie.floor(high) : trie.lower(high);
+		return word == null || tooLow(word) ? null : word;
+	}
+
+	private String ceilingWord(String word) {
+		if(tooLow(word)) {
+			return lowest();
+		}
+		String found = trie.ceiling(word);
+		return found == null || tooHigh(found) ? null : found;
+	}
+
+	private String higherWord(String word) {
+		if(tooLow(word)) {
+			return lowest();
+		}
+		String found = trie.higher(word);
+		return found == null || tooHigh(found) ? null : found;
+	}
+
+	private String floorWord(String word) {
+		if(tooHigh(word)) {
+			return highest();
+		}
+		String found = trie.floor(word);
+		return found == null || tooLow(found) ? null : found;
+	}
+
+	private String lowerWord(String word) {
+		if(tooHigh(word)) {
+			return highest();
+		}
+		String found = trie.lower(word);
+		return found == null || tooLow(found) ? null : found;
+	}
+
+	private boolean tooLow(String word) {
+		if(low == null) {
+			return false;
+		}
+		int compare = word.compareTo(low);
+		return compare < 0 || (compare == 0 && !lowInclusive);
+	}
+
+	private boolean tooHigh(String word) {
+		if(high == null) {
+			return false;
+		}
+		int compare = word.compareTo(high);
+		return compare > 0 || (compare == 0 && !highInclusive);
+	}
+
+	private boolean inRange(String word) {
+		return !tooLow(word) && !tooHigh(word);
+	}
+
+	/**
+	 * Is a new bound within the old ones. An exclusive new bound may lie on an
+	 * exclusive old bound, it does not let anything new in.
+	 */
+	private boolean inRange(String word, boolean inclusive) {
+		if(inclusive) {
+			return inRange(word);
+		}
+		return (low == null || word.compareTo(low) >= 0) && (high == null || word.compareTo(high) <= 0);
+	}
+
+	private static String exists(String word) {
+		if(word == null) {
+			throw new NoSuchElementException();
+		}
+		return word;
+	}
+}
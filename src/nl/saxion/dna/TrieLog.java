@@ -0,0 +1,316 @@
+package nl.saxion.dna;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the changes made to a Trie<Data>, so they survive a crash.
+ *
+ * Records are collected in memory and a background thread writes them to the
+ * file and forces them to disk in groups (group commit), so adding a record
+ * never waits for the disk. flush() waits until everything added so far is on disk.
+ *
+ * A record is: type (1 byte), position (int), word length (short), the word
+ * (1 byte per character) and a CRC32 of all of that (int). Replaying stops
+ * at the first record that is incomplete or damaged, which is where a crash
+ * interrupted the last write.
+ *
+ * @author Idmon & Emre
+ */
+public class TrieLog {
+
+	static final byte INSERT = 1;
+	static final byte DELETE = 2;
+
+	private FileChannel channel;					// The log file
+	private long interval;							// Milliseconds between group commits
+	private Thread flusher;							// Writes and forces the groups
+
+	// Guarded by 'this'
+	private ByteArrayOutputStream pending;			// Records not written yet
+	private byte[] record;							// The record being added, reused
+	private CRC32 crc;								// Checksum of that record, reused
+	private long added;								// Records added
+	private long durable;							// Records forced to disk
+	private long size;								// Bytes in the log, written or not
+	private IOException failure;					// Set when writing failed
+	private boolean closed;
+
+	/**
+	 * Opens a log to add to. A damaged end, left by a crash, is cut off first.
+	 * @param file 			- The log file, created if it does not exist
+	 * @param interval 		- Milliseconds between group commits
+	 * @throws IOException 	- When the file can't be opened
+	 */
+	public TrieLog(Path file, long interval) throws IOException {
+		this.interval = interval;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.size = validLength(file);
+		channel.truncate(size);
+		channel.position(size);
+		this.pending = new ByteArrayOutputStream(1 << 16);
+		this.record = new byte[64];
+		this.crc = new CRC32();
+
+		flusher = new Thread("trie-log-flusher") {
+			public void run() {
+				flushLoop();
+			}
+		};
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Adds an insert of a word on a position to the log
+	 * @param word 		- The word, letters only
+	 * @param position 	- Its position
+	 */
+	public void insert(String word, int position) throws IOException {
+		append(INSERT, word, position);
+	}
+
+	/**
+	 * Adds a delete of a word to the log
+	 * @param word 	- The word, letters only
+	 */
+	public void delete(String word) throws IOException {
+		append(DELETE, word, 0);
+	}
+
+	private synchronized void append(byte type, String word, int position) throws IOException {
+		if(failure != null) {
+			throw failure;
+		}
+		if(closed) {
+			throw new IOException("Log is closed");
+		}
+		if(word.length() > 0xFFFF) {
+			throw new IllegalArgumentException("Word is too long for the log: " + word.length());
+		}
+
+		// Built in a buffer of its own, so the checksum only reads this record
+		int length = 11 + word.length();
+		if(record.length < length) {
+			record = new byte[Math.max(length, record.length * 2)];
+		}
+		record[0] = type;
+		writeInt(record, 1, position);
+		record[5] = (byte) (word.length() >>> 8);
+		record[6] = (byte) word.length();
+		for(int i = 0; i < word.length(); i++) {
+			record[7 + i] = (byte) word.charAt(i);
+		}
+		crc.reset();
+		crc.update(record, 0, length - 4);
+		writeInt(record, length - 4, (int) crc.getValue());
+		pending.write(record, 0, length);
+		size += length;
+		added++;
+	}
+
+	/**
+	 * Writes an int in 4 bytes, highest first, as DataOutputStream does
+	 */
+	private static void writeInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+	/**
+	 * Waits until every record added so far has been forced to disk.
+	 * Other records that arrive meanwhile go along in the same group.
+	 * @throws IOException - When writing the log failed
+	 */
+	public synchronized void flush() throws IOException {
+		long target = added;
+		notifyAll();
+		while(durable < target && failure == null) {
+			try {
+				wait();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while flushing the log", e);
+			}
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Gives back the size of the log
+	 * @return long - Bytes in the log, including those not written yet
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Flushes the log and closes the file
+	 * @throws IOException - When writing the log failed
+	 */
+	public void close() throws IOException {
+		flush();
+		synchronized(this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			flusher.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+	}
+
+	/**
+	 * Runs on the flusher thread: takes the pending records, writes them and
+	 * forces them to disk, without holding the lock during the I/O
+	 */
+	private void flushLoop() {
+		while(true) {
+			byte[] group;
+			long target;
+			synchronized(this) {
+				while(pending.size() == 0 && !closed) {
+					try {
+						wait(interval);
+					} catch(InterruptedException e) {
+						return;
+					}
+				}
+				if(pending.size() == 0 && closed) {
+					return;
+				}
+				group = pending.toByteArray();
+				target = added;
+				pending.reset();
+			}
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(group);
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+			} catch(IOException e) {
+				synchronized(this) {
+					failure = e;
+					notifyAll();
+				}
+				return;
+			}
+			synchronized(this) {
+				durable = target;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Applies all complete records of a log to a trie
+	 * @param file 			- The log file
+	 * @param trie 			- The trie to change
+	 * @return int 			- The amount of records applied
+	 * @throws IOException 	- When the file can't be read
+	 */
+	public static int replay(Path file, Trie<Data> trie) throws IOException {
+		int records = 0;
+		InputStream stream = Files.newInputStream(file);
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+			while(true) {
+				Record record = Record.read(in);
+				if(record == null) {
+					break;
+				}
+				if(record.type == INSERT) {
+					if(!trie.addPosition(record.word, 0, record.word.length(), record.position)) {
+						trie.insert(record.word, new Data(record.position));
+					}
+				} else {
+					trie.delete(record.word);
+				}
+				records++;
+			}
+		} finally {
+			stream.close();
+		}
+		return records;
+	}
+
+	/**
+	 * Finds where the complete records of a log end
+	 */
+	private static long validLength(Path file) throws IOException {
+		long length = 0;
+		FileChannel reader = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(reader), 1 << 16));
+			Record record;
+			while((record = Record.read(in)) != null) {
+				length += record.length;
+			}
+		} finally {
+			reader.close();
+		}
+		return length;
+	}
+
+	/**
+	 * One record read back from the log
+	 */
+	private static class Record {
+		private byte type;
+		private int position;
+		private String word;
+		private int length;
+
+		/**
+		 * Reads the next record
+		 * @return Record - The record, null at the end or at a damaged record
+		 */
+		private static Record read(DataInputStream in) throws IOException {
+			try {
+				Record record = new Record();
+				record.type = in.readByte();
+				record.position = in.readInt();
+				int length = in.readUnsignedShort();
+				byte[] bytes = new byte[length];
+				in.readFully(bytes);
+				int checksum = in.readInt();
+
+				ByteArrayOutputStream check = new ByteArrayOutputStream(7 + length);
+				DataOutputStream out = new DataOutputStream(check);
+				out.writeByte(record.type);
+				out.writeInt(record.position);
+				out.writeShort(length);
+				out.write(bytes);
+				CRC32 crc = new CRC32();
+				crc.update(check.toByteArray());
+				if((int) crc.getValue() != checksum || (record.type != INSERT && record.type != DELETE)) {
+					return null;
+				}
+				record.word = new String(bytes, "US-ASCII");
+				record.length = 11 + length;
+				return record;
+			} catch(EOFException e) {
+				return null;
+			}
+		}
+	}
+}
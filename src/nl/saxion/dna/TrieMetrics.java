@@ -0,0 +1,28 @@
+package nl.saxion.dna;
+
+/**
+ * Gets told how long each operation on a Trie took. Set one with
+ * Trie.setMetrics; without one the Trie does not even read the clock.
+ *
+ * @author Idmon & Emre
+ */
+public interface TrieMetrics {
+
+	/**
+	 * The operations that are measured
+	 */
+	enum Operation {
+		INSERT, SEARCH, DELETE, AUTOCOMPLETE
+	}
+
+	/**
+	 * An operation has been done. The key is a region of a character sequence,
+	 * which may be much longer, so it is only copied when it is really needed.
+	 * @param operation 	- Which operation
+	 * @param key 			- The sequence holding the word or prefix it was done on
+	 * @param start 		- Index of the first character of the word or prefix
+	 * @param end 			- Index after the last character of the word or prefix
+	 * @param nanos 		- How long it took in nanoseconds
+	 */
+	void record(Operation operation, CharSequence key, int start, int end, long nanos);
+}
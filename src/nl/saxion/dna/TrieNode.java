@@ -1,8 +1,15 @@
 package nl.saxion.dna;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BinaryOperator;
 
 /**
  * This TrieNode<T> class keeps track of all his children
@@ -15,12 +22,15 @@ import java.util.TreeMap;
 public class TrieNode<T> {
 	
 	private TrieNode<T> parent;						// The Parent node
-	private ArrayList<TrieNode<T>> children;		// His child nodes
+	private ChildIndex<T> children;					// His child nodes, indexed on starting character
 	private boolean isLeaf;							// Is it a leaf
 	private boolean isWord;							// Is it a word
-	private String startCharacter;					// The starting character
+	private char startCharacter;					// The starting character
 	private String characters;						// The remaining characters
 	private T data;									// Data object to store extra information
+	private int maxFrequency;						// Highest frequency of a word in this subtree
+	private int words;								// Amount of words in this subtree, its own included
+	private long occurrences;						// Frequencies of the words in this subtree together
 	
 	// Keep track of node numbers (For graph visualizing purposes)
 	private static int NR;
@@ -30,7 +40,7 @@ public class TrieNode<T> {
 	 * Constructor for the root-node
 	 */
 	public TrieNode() {
-		children = new ArrayList<TrieNode<T>>();
+		children = new ChildIndex<T>();
 		isLeaf = true;
 		isWord = false;
 		characters = "";
@@ -43,7 +53,7 @@ public class TrieNode<T> {
 	 * @param characters 	 - The remaining characters
 	 * @param data			 - The extra data-object
 	 */
-	public TrieNode(String startCharacter, String characters, T data) {
+	public TrieNode(char startCharacter, String characters, T data) {
 		this();
 		this.startCharacter = startCharacter;
 		this.characters = characters;
@@ -56,13 +66,20 @@ public class TrieNode<T> {
 	 * @param c 		- Starting Character you're looking for
 	 * @return child	- The child with this starting character
 	 */
+	public TrieNode<T> findNode(char c) {
+		return children.get(c);
+	}
+
+	/**
+	 * Find a node with the same starting character
+	 * @param s 		- String holding the starting character you're looking for
+	 * @return child	- The child with this starting character
+	 */
 	public TrieNode<T> findNode(String s) {
-		for(TrieNode<T> child : children) {
-			if(s != null && child.startCharacter != null && s.equals(child.startCharacter)) {
-				return child;
-			}
+		if(s == null || s.length() != 1) {
+			return null;
 		}
-		return null;
+		return children.get(s.charAt(0));
 	}
 
 	/**
@@ -75,18 +92,20 @@ public class TrieNode<T> {
 	 */
     public void insert(String word, T newData) {
             isLeaf = false;
-            String s = word.substring(0, 1);
+            char c = word.charAt(0);
 
             // Find the child with this specific character
-            TrieNode<T> child = findNode(s);            
+            TrieNode<T> child = findNode(c);            
             if(child == null) {
             	// Character not found, so a new node will be created
             	// All remaining characters will be stored in this as well
-                child = new TrieNode<T>(s, word.substring(1), null);
+                child = new TrieNode<T>(c, word.substring(1), null);
                 child.parent = this;
                 child.isWord = true;
                 child.data = newData;
-                children.add(child);                   
+                children.put(c, child);                   
+                child.raiseFrequency(child.getFrequency());
+                child.addCounts(1, child.getFrequency());
             } else {
             	
             	String childWord = child.startCharacter + child.characters;
@@ -95,22 +114,26 @@ public class TrieNode<T> {
             	if(child.isWord && word.equals(childWord) && newData instanceof Data) {
                 	Data chData = (Data) child.getData();
                 	Data nwData = (Data) newData;
-                	chData.addPosition(nwData.getPosition().get(0));
+                	int before = child.getFrequency();
+                	chData.addAll(nwData);
+                	child.raiseFrequency(child.getFrequency());
+                	child.addCounts(0, child.getFrequency() - before);
             	} else {
                 	
                     // Split the characters in seperate nodes
                     if(child.characters.length() != 0) {
-                        child.insert(child.characters, child.data);
-                        child.isWord = false;
-                        child.data = null;
-                        child.characters = "";
+                        child.split(1);
                     }
                     
                     // If it an existing character within the trie
                     // Make it a word and store the data
                     if(word.length() == 1) {
+                        int before = child.getFrequency();
+                        int added = child.isWord ? 0 : 1;
                         child.isWord = true;
                         child.data = newData;
+                        child.raiseFrequency(child.getFrequency());
+                        child.addCounts(added, child.getFrequency() - before);
                     } else {
                     	child.insert(word.substring(1), newData);
                     }  
@@ -120,45 +143,332 @@ public class TrieNode<T> {
 
 	
 	/**
-	 * This method deletes a word from the TrieNode<T>
-	 * It uses recursion to and asks from its parent-node to be deleted
+	 * This method deletes the word this node represents from the TrieNode<T>
+	 * A leaf asks its parent-node to be deleted, which goes on upwards
+	 * as long as parents turn into leaves that are no word themselves.
 	 * After deletion, the trie is automatically gonna re-merge itself to
 	 * reduce the depth
 	 */
-	public void delete(String s) {
-		System.out.println("Traversing in: " + s);
-		// Searching for the to be deleted character
-		if(children.size() > 0){ 
-			for(int i = 0; i < children.size(); i++) {
-				TrieNode<T> child = children.get(i);
-				if(child != null && s.equals((child.startCharacter + child.characters))) {
-					System.out.println("Node '" + s + "' is deleted!");
-					child = null;
-					children.remove(i);
-					isLeaf = children.size() == 0;
-					break;
-				}
-			}
+	public void delete() {
+		addCounts(-1, -getFrequency());
+		isWord = false;
+		data = null;
+		
+		if(isLeaf) {
+			// If it is a leaf, ask parent to delete yourself
+			parent.removeChild(this);
+		} else {
+			// If it is not a leaf, the characters stay in the tree
+			updateFrequency();
+			reduce();
+		}
+	}
+	
+	/**
+	 * Removes a child from this node. If this node becomes a leaf without
+	 * being a word, it asks its own parent to delete it as well
+	 * @param child - The child that needs to be removed
+	 */
+	private void removeChild(TrieNode<T> child) {
+		children.remove(child.startCharacter);
+		isLeaf = children.size() == 0;
+		
+		if(parent != null && isLeaf && !isWord) {
+			parent.removeChild(this);
+		} else {
+			updateFrequency();
+			reduce();
+		}
+	}
+	
+	/**
+	 * Moves the characters of the label from k onwards, with the word and the
+	 * children, into a new child. This node keeps the first k characters.
+	 * @param k - Characters that stay, at least 1 and less than the label length
+	 */
+	private void split(int k) {
+		TrieNode<T> rest = new TrieNode<T>(characters.charAt(k - 1), characters.substring(k), data);
+		rest.parent = this;
+		rest.isWord = isWord;
+		rest.isLeaf = isLeaf;
+		rest.maxFrequency = maxFrequency;
+		rest.words = words;
+		rest.occurrences = occurrences;
+		rest.children = children;
+		for(TrieNode<T> child : children) {
+			child.parent = rest;
 		}
 		
-		// If it is a leaf and not root-node, ask parent to delete yourself
-		if(startCharacter != null && isLeaf) {
-			parent.delete(startCharacter + characters);
+		children = new ChildIndex<T>();
+		children.put(rest.startCharacter, rest);
+		isLeaf = false;
+		isWord = false;
+		data = null;
+		characters = characters.substring(0, k - 1);
+	}
+	
+	/**
+	 * Merges the tree under a node of another trie into the tree under this
+	 * node; both spell the same word. A child of the other node that has no
+	 * counterpart here is moved over with its whole subtree. Where both have
+	 * a child with the same starting character, the labels are compared and
+	 * only split where they differ. Words in both get their values combined.
+	 * The other tree is taken apart on the way.
+	 * @param other 	- The node of the other trie
+	 * @param combiner 	- Combines the value here with the value there
+	 */
+	void mergeFrom(TrieNode<T> other, BinaryOperator<T> combiner) {
+		if(other.isWord) {
+			data = isWord ? combiner.apply(data, other.data) : other.data;
+			isWord = true;
+		}
+		for(TrieNode<T> theirs : other.getChildren()) {
+			mergeChild(theirs, combiner);
+		}
+		recount();
+	}
+	
+	/**
+	 * Merges a node of another trie, that continues the word of this node, into its children
+	 */
+	private void mergeChild(TrieNode<T> theirs, BinaryOperator<T> combiner) {
+		TrieNode<T> mine = children.get(theirs.startCharacter);
+		if(mine == null) {
+			adopt(theirs);
+			return;
 		}
 		
-		// If it is not a leaf but within the trie, set isWord to false and delete the stored data
-		if(s.equals(startCharacter) && !isLeaf) {
-			System.out.println("Character stays in the tree, but word is being deleted");
-			isWord = false;
-			data = null;
+		// Where do the labels go different ways
+		String their = theirs.characters;
+		int length = Math.min(mine.characters.length(), their.length());
+		int k = 0;
+		while(k < length && mine.characters.charAt(k) == their.charAt(k)) {
+			k++;
+		}
+		if(k < mine.characters.length()) {
+			mine.split(k + 1);
+		}
+		if(k == their.length()) {
+			mine.mergeFrom(theirs, combiner);
 		} else {
-			// Search for its leaf to merge itself and
-			// get rid of unnecessary depth
-			if(!isLeaf) {
-				TrieNode<T> leaf = getLeaf();
-				if(leaf != null && leaf != this) {
-					leaf.merge();
+			// Their node goes on below mine, without the shared characters
+			theirs.startCharacter = their.charAt(k);
+			theirs.characters = their.substring(k + 1);
+			mine.mergeChild(theirs, combiner);
+			mine.recount();
+		}
+	}
+	
+	/**
+	 * Recalculates the highest frequency and the counts under this node from
+	 * its own word and its children
+	 */
+	private void recount() {
+		int max = getFrequency();
+		int count = isWord ? 1 : 0;
+		long sum = getFrequency();
+		for(TrieNode<T> child : children) {
+			max = Math.max(max, child.maxFrequency);
+			count += child.words;
+			sum += child.occurrences;
+		}
+		maxFrequency = max;
+		words = count;
+		occurrences = sum;
+	}
+	
+	/**
+	 * Compacts the tree under this node. Every node that is no word and has
+	 * one child takes over that child, as merge() does for leaves, so no
+	 * chains are left. The child arrays and Data-objects are trimmed and
+	 * equal edge labels become one String. Walks with a stack of its own.
+	 * @return int - The amount of nodes that were merged away
+	 */
+	int compact() {
+		HashMap<String, String> labels = new HashMap<String, String>();
+		ArrayDeque<TrieNode<T>> stack = new ArrayDeque<TrieNode<T>>();
+		stack.push(this);
+		int merged = 0;
+		while(!stack.isEmpty()) {
+			TrieNode<T> node = stack.pop();
+			if(node.parent != null) {
+				StringBuilder label = null;
+				while(!node.isWord && node.children.size() == 1) {
+					TrieNode<T> child = node.children.first();
+					if(label == null) {
+						label = new StringBuilder(node.characters);
+					}
+					label.append(child.startCharacter).append(child.characters);
+					node.isWord = child.isWord;
+					node.isLeaf = child.isLeaf;
+					node.data = child.data;
+					node.children = child.children;
+					for(TrieNode<T> grandchild : node.children) {
+						grandchild.parent = node;
+					}
+					merged++;
+				}
+				String characters = label == null ? node.characters : label.toString();
+				String shared = labels.get(characters);
+				if(shared == null) {
+					labels.put(characters, characters);
+					shared = characters;
 				}
+				node.characters = shared;
+			}
+			node.children.trim();
+			if(node.data instanceof Data) {
+				((Data) node.data).trim();
+			}
+			for(TrieNode<T> child : node.children) {
+				stack.push(child);
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * Adds another position to the Data-object of this word, without
+	 * needing a new Data-object for it
+	 * @param position - The position of the new occurrence
+	 */
+	public void addPosition(int position) {
+		((Data) data).addPosition(position);
+		raiseFrequency(getFrequency());
+		addCounts(0, 1);
+	}
+
+	/**
+	 * Adds a child after the existing ones, with its final characters.
+	 * Used by the TrieBuilder, which adds the children in alfabetical order.
+	 * @param c 			- The starting character
+	 * @param characters 	- The remaining characters
+	 * @return TrieNode 	- The new child
+	 */
+	TrieNode<T> append(char c, String characters) {
+		TrieNode<T> child = new TrieNode<T>(c, characters, null);
+		child.parent = this;
+		children.put(c, child);
+		isLeaf = false;
+		return child;
+	}
+
+	/**
+	 * Takes over a node of another trie as a child, with everything under it.
+	 * There may not be a child with the same starting character yet.
+	 * @param child - The node to take over
+	 */
+	void adopt(TrieNode<T> child) {
+		child.parent = this;
+		children.put(child.startCharacter, child);
+		isLeaf = false;
+		raiseFrequency(child.maxFrequency);
+		addCounts(child.words, child.occurrences);
+	}
+
+	/**
+	 * Makes this node a word. If it already is one, the positions of
+	 * a Data-object are added to it, like insert does
+	 * @param newData - The data-object of the word
+	 */
+	void setWord(T newData) {
+		int before = getFrequency();
+		int added = isWord ? 0 : 1;
+		if(isWord && data instanceof Data && newData instanceof Data) {
+			((Data) data).addAll((Data) newData);
+		} else {
+			isWord = true;
+			data = newData;
+		}
+		raiseFrequency(getFrequency());
+		addCounts(added, getFrequency() - before);
+	}
+
+	/**
+	 * Gives back how often the word of this node occurs
+	 * @return int - Amount of positions, 0 if the node is no word
+	 */
+	public int getFrequency() {
+		if(!isWord) {
+			return 0;
+		}
+		return data instanceof Data ? ((Data) data).frequency() : 1;
+	}
+	
+	/**
+	 * Gives back the highest frequency of a word under this node
+	 * @return int - The highest frequency in the subtree
+	 */
+	public int getMaxFrequency() {
+		return maxFrequency;
+	}
+	
+	/**
+	 * Gives back the amount of words under this node, its own included
+	 * @return int - The word count of the subtree
+	 */
+	public int getWordCount() {
+		return words;
+	}
+	
+	/**
+	 * Gives back how often the words under this node occur together
+	 * @return long - The sum of the frequencies in the subtree
+	 */
+	public long getOccurrences() {
+		return occurrences;
+	}
+	
+	/**
+	 * A word under this node got more frequent, so this node and its parents
+	 * take over the frequency where it is higher than what they had
+	 * @param frequency - The new frequency of the word
+	 */
+	private void raiseFrequency(int frequency) {
+		for(TrieNode<T> node = this; node != null && node.maxFrequency < frequency; node = node.parent) {
+			node.maxFrequency = frequency;
+		}
+	}
+	
+	/**
+	 * Words under this node were added, deleted or got more frequent, so this
+	 * node and its parents take over the difference
+	 * @param words 		- The change in the amount of words
+	 * @param occurrences 	- The change in their frequencies together
+	 */
+	private void addCounts(int words, long occurrences) {
+		for(TrieNode<T> node = this; node != null; node = node.parent) {
+			node.words += words;
+			node.occurrences += occurrences;
+		}
+	}
+	
+	/**
+	 * A word under this node has been deleted, so the highest frequency is
+	 * recalculated from its children. Parents follow until nothing changes.
+	 */
+	private void updateFrequency() {
+		for(TrieNode<T> node = this; node != null; node = node.parent) {
+			int max = node.getFrequency();
+			for(TrieNode<T> child : node.children) {
+				max = Math.max(max, child.maxFrequency);
+			}
+			if(max == node.maxFrequency) {
+				return;
+			}
+			node.maxFrequency = max;
+		}
+	}
+	
+	/**
+	 * Search for its leaf to merge itself and
+	 * get rid of unnecessary depth
+	 */
+	private void reduce() {
+		if(!isLeaf) {
+			TrieNode<T> leaf = getLeaf();
+			if(leaf != null && leaf != this) {
+				leaf.merge();
 			}
 		}
 	}
@@ -176,12 +486,8 @@ public class TrieNode<T> {
 		}
 		
 		// Traverse to the bottom leaf as long as each node has 1 child
-		for(TrieNode<T> child : children) {
-			if(child != null && children.size() == 1) {
-				return child.getLeaf();
-			} else {
-				return null;
-			}
+		if(children.size() == 1) {
+			return children.first().getLeaf();
 		}
 		return null;
 	}
@@ -194,7 +500,7 @@ public class TrieNode<T> {
 	 * - Has more than 1 child
 	 */
 	public void merge() {
-		if(parent.startCharacter == null || parent.isWord || parent.children.size() != 1) {
+		if(parent.parent == null || parent.isWord || parent.children.size() != 1) {
 			return;
 		} else {
 
@@ -205,7 +511,7 @@ public class TrieNode<T> {
 			parent.isLeaf = true;
 			parent.data = data;
 			parent.characters += startCharacter + characters;
-			parent.children.remove(0);	
+			parent.children.remove(startCharacter);	
 			
 			// Jump to his parent
 			parent.merge();
@@ -219,102 +525,169 @@ public class TrieNode<T> {
 	 */
 	public ArrayList<String> autocomplete() {
 		ArrayList<String> words = new ArrayList<String>();
-		
-		// If the current node is a word, add it to the list
-		if(isWord) {
-			words.add(toString());
+		CompletionIterator<T> iterator = new CompletionIterator<T>(this, null, Integer.MAX_VALUE);
+		while(iterator.hasNext()) {
+			words.add(iterator.next());
 		}
+		return words;
+	}
+	
+	/**
+	 * Builds a list with the k most frequent words under the current node,
+	 * the most frequent first and alfabetical when they are just as frequent.
+	 * Nodes are explored best-first on the highest frequency under them, so
+	 * a subtree is never entered when it can't beat the k words found.
+	 * The frontier holds at most the amount of words still missing: every
+	 * candidate in it stands for at least one word that comes before anything
+	 * the candidates after it can give, so the last one is dropped when it is full.
+	 * @param k 			- The amount of words wanted
+	 * @return ArrayList 	- List with at most k words
+	 */
+	public ArrayList<String> autocomplete(int k) {
+		ArrayList<String> words = new ArrayList<String>();
+		TreeSet<Candidate<T>> frontier = new TreeSet<Candidate<T>>();
+		offer(frontier, new Candidate<T>(this, toString(), maxFrequency, false), k);
 		
-		// If there are children, find the words and add them as well (recursion)
-		if(!isLeaf) {
-			for(TrieNode<T> child : children) {
-				if(child != null) {
-					words.addAll(child.autocomplete());
-				}
+		while(words.size() < k && !frontier.isEmpty()) {
+			Candidate<T> candidate = frontier.pollFirst();
+			if(candidate.isWord) {
+				words.add(candidate.word);
+				continue;
+			}
+			
+			// Expand the node: its own word and its children become candidates
+			int missing = k - words.size();
+			TrieNode<T> node = candidate.node;
+			if(node.isWord) {
+				offer(frontier, new Candidate<T>(node, candidate.word, node.getFrequency(), true), missing);
+			}
+			for(TrieNode<T> child : node.children) {
+				offer(frontier, new Candidate<T>(child, candidate.word + child.getLabel(), child.maxFrequency, false), missing);
 			}
 		}
 		return words;
 	}
 	
 	/**
-	 * Builds a list of words in Alfabetical order
-	 * Also the depth of the node will be given with the map
-	 * @return TreeMap<String, Integer> - The produced alfabetical table
+	 * Adds a candidate to the frontier, keeping only the best ones
+	 * @param frontier 	- The candidates, best first
+	 * @param candidate - The candidate to add
+	 * @param bound 	- The most candidates the frontier may hold
 	 */
-	public TreeMap<String, Integer> getAlfabeticalOrder(int depth) {
-		TreeMap<String, Integer> map = new TreeMap<String, Integer>();
-
-		// Add if it is indeed a word
-		if(isWord) {
-			map.put(toString(), depth);
+	private static <T> void offer(TreeSet<Candidate<T>> frontier, Candidate<T> candidate, int bound) {
+		if(bound <= 0) {
+			return;
 		}
-		
-		// Increment the depth
-		depth++;
-
-		// If there are children, find them and add them as well (recursion)
-		if(!isLeaf) {
-			for(TrieNode<T> child : children) {
-				if(child != null) {
-					TreeMap<String, Integer> table = child.getAlfabeticalOrder(depth);
-					map.putAll(table);
-				}
+		if(frontier.size() >= bound) {
+			if(candidate.compareTo(frontier.last()) >= 0) {
+				// It can't beat any of the candidates there
+				return;
 			}
+			frontier.pollLast();
 		}
-		return map;
+		frontier.add(candidate);
 	}
 	
 	/**
-	 * 
-	 * Builds a list of words in frequency order
-	 * Also the amount of frequency will be displayed
-	 * @return HashMap<String, Integer> - The produced frequency list
+	 * A word, or a node with words under it, waiting to be looked at.
+	 * The frequency of a node is the highest one below it and its word is a
+	 * prefix of all words below it, so it comes before everything it can produce.
 	 */
-	public HashMap<String, Integer> getFrequencyOrder() {
-		HashMap<String, Integer> map = new HashMap<String, Integer>();
+	private static class Candidate<T> implements Comparable<Candidate<T>> {
+		private TrieNode<T> node;
+		private String word;
+		private int frequency;
+		private boolean isWord;
 		
-		// Is it a word?
-		if(isWord) {
-			String word = toString();
-			Data qData = (Data) getData();
-			map.put(word, qData.getPosition().size());
+		private Candidate(TrieNode<T> node, String word, int frequency, boolean isWord) {
+			this.node = node;
+			this.word = word;
+			this.frequency = frequency;
+			this.isWord = isWord;
 		}
 		
-		// Look at his children
-		if(!isLeaf) {
-			for(TrieNode<T> child : children) {
-				if(child != null) {
-					// Merge the children map into its parent map
-					HashMap<String, Integer> table = child.getFrequencyOrder();
-					for(String key : table.keySet()) {
-						map.put(key, table.get(key));
+		@Override
+		public int compareTo(Candidate<T> other) {
+			if(frequency != other.frequency) {
+				return frequency > other.frequency ? -1 : 1;
+			}
+			return word.compareTo(other.word);
+		}
+	}
+
+	/**
+	 * Adds the words under this node that are at most maxEdits edits
+	 * (insert, delete or replace a character) away from the query, in alfabetical order.
+	 * Each character on the way down adds one row to the edit distance table,
+	 * so all words through a node share the rows above it. A child is skipped
+	 * as soon as every entry of its row is over the budget, because no
+	 * word below it can come any closer.
+	 * @param query 	- The word to look for
+	 * @param maxEdits 	- The maximum edit distance
+	 * @param prefix 	- If only a prefix of the words has to be close to the query
+	 * @param rows 	- Per length of the word the row of the table, the rows up to this node are filled in
+	 * @param word 		- The word of this node, children are added to it and removed again
+	 * @param words 	- The list the words are added to
+	 */
+	void fuzzy(String query, int maxEdits, boolean prefix, ArrayList<int[]> rows, StringBuilder word, ArrayList<String> words) {
+		int n = query.length();
+		for(TrieNode<T> child : children) {
+			int length = word.length();
+			int[] current = rows.get(length);
+			boolean alive = true;
+			for(int i = 0; i <= child.characters.length() && alive; i++) {
+				char c = i == 0 ? child.startCharacter : child.characters.charAt(i - 1);
+				word.append(c);
+
+				// The next row: the cost of the query up to j against the word so far
+				if(rows.size() == word.length()) {
+					rows.add(new int[n + 1]);
+				}
+				int[] next = rows.get(word.length());
+				next[0] = current[0] + 1;
+				int min = next[0];
+				for(int j = 1; j <= n; j++) {
+					int replace = current[j - 1] + (query.charAt(j - 1) == c ? 0 : 1);
+					next[j] = Math.min(replace, Math.min(current[j], next[j - 1]) + 1);
+					min = Math.min(min, next[j]);
+				}
+				current = next;
+
+				if(prefix && current[n] <= maxEdits) {
+					// The word so far is close enough, so is every word below it
+					CompletionIterator<T> iterator = new CompletionIterator<T>(child, null, Integer.MAX_VALUE);
+					while(iterator.hasNext()) {
+						words.add(iterator.next());
 					}
+					alive = false;
+				} else if(min > maxEdits) {
+					alive = false;
+				}
+			}
+			if(alive) {
+				if(child.isWord && current[n] <= maxEdits) {
+					words.add(word.toString());
 				}
+				child.fuzzy(query, maxEdits, prefix, rows, word, words);
 			}
+			word.setLength(length);
 		}
-		return map;
 	}
-	
+
 	/**
 	 * Print the Trie in the console in a nice way
 	 * @return String - Structure for the console to output
 	 */
 	public String prettyPrint(int spaces) {
-		// Calculate spaces
-		String offset = "";
-		for(int i = 0; i < spaces; i++) {
-			offset += " ";
+		StringWriter writer = new StringWriter();
+		writer.write('\n');
+		try {
+			TrieExporter.text(this, spaces, writer);
+		} catch(IOException e) {
+			// A StringWriter doesn't fail
+			throw new UncheckedIOException(e);
 		}
-		spaces+=2;
-		
-		// Add the rest
-		StringBuilder builder = new StringBuilder("\n");
-		for(TrieNode<T> child : children) {
-			builder.append(offset);
-			builder.append(child.startCharacter + child.characters);
-			builder.append(child.prettyPrint(spaces));
-		}
-		return builder.toString();
+		return writer.toString();
 	}
 
 	/**
@@ -327,15 +700,23 @@ public class TrieNode<T> {
 		if(parent == null) {
 			return "";
 		}else{
-			return parent.toString() + startCharacter + characters;
+			return parent.toString() + getLabel();
 		}
 	}
 	
 	/**
 	 * Prints the tree which should be copied into the following site: http://graphviz-dev.appspot.com/
+	 * The tree is streamed to the console, it is not built as one String first.
 	 */
 	public void print(){
-		System.out.println(toDotString());
+		try {
+			Writer out = new OutputStreamWriter(System.out);
+			TrieExporter.export(this, TrieExporter.Format.DOT, out);
+			out.write('\n');
+			out.flush();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	/**
@@ -343,43 +724,46 @@ public class TrieNode<T> {
 	 * @return the tree in string format
 	 */
 	public String toDotString() {
-		String output = "digraph{\n";
-		// Print all nodes
-		output += nodesToDot();
-		// Print all edges
-		output += edgesToDot();
-		return output + "}";
+		StringWriter writer = new StringWriter();
+		try {
+			TrieExporter.export(this, TrieExporter.Format.DOT, writer);
+		} catch(IOException e) {
+			// A StringWriter doesn't fail
+			throw new UncheckedIOException(e);
+		}
+		return writer.toString();
 	}
-
+	
 	/**
-	 * Returns the nodes in string form
-	 * @return the nodes
+	 * Gives back the number of the node, which names it in the graph
+	 * @return int - The node number
 	 */
-	private String nodesToDot() {
-		String output = "n" + nr + "[label=\""+startCharacter + characters + "\"";
-		if(isWord){
-			output += ",fillcolor=\"palegreen\",style=\"filled,rounded\"];\n";
-		}else{
-			output += "];\n";
-		}
-
-		for (TrieNode<T> node : children) {
-			output += node.nodesToDot();
-		}
-		return output;
+	int getNumber() {
+		return nr;
 	}
-
+	
 	/**
-	 * Returns the edges in string form
-	 * @return the edges
+	 * Is this node the end of a word
+	 * @return boolean - True if the node represents a word
 	 */
-	private String edgesToDot() {
-		String output = "";
-		for (TrieNode<T> node : children) {
-			output += "n" + nr + "->n" + node.nr + ";\n";
-			output += node.edgesToDot();
-		}
-		return output;
+	public boolean isWord() {
+		return isWord;
+	}
+	
+	/**
+	 * Get the starting character of the node
+	 * @return char - The starting character, 0 for the root-node
+	 */
+	public char getStartCharacter() {
+		return startCharacter;
+	}
+	
+	/**
+	 * Get the full edge label (starting character and remaining characters)
+	 * @return String - The label, empty for the root-node
+	 */
+	public String getLabel() {
+		return parent == null ? "" : startCharacter + characters;
 	}
 	
 	/**
@@ -392,9 +776,21 @@ public class TrieNode<T> {
 	
 	/**
 	 * Gives back its children
-	 * @return ArrayList<TrieNode<T>> - An Arraylist of all its children
+	 * @return ArrayList<TrieNode<T>> - A copy of all its children in character order
 	 */
 	public ArrayList<TrieNode<T>> getChildren() {
+		ArrayList<TrieNode<T>> list = new ArrayList<TrieNode<T>>(children.size());
+		for(TrieNode<T> child : children) {
+			list.add(child);
+		}
+		return list;
+	}
+	
+	/**
+	 * Gives back the index of its children
+	 * @return ChildIndex<T> - The children indexed on their starting character
+	 */
+	public ChildIndex<T> getChildIndex() {
 		return children;
 	}
 	
@@ -0,0 +1,124 @@
+package nl.saxion.dna;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * One version of a VersionedTrie, pinned for reading. Batches that commit
+ * after the snapshot was taken are not seen, so a reader gets the same answers
+ * for as long as it keeps the snapshot. Reading takes no locks: the tree of a
+ * version is never changed. Close the snapshot when done, so the version can
+ * be reclaimed.
+ *
+ * @author Idmon & Emre
+ * @param <T> Data structure
+ */
+public class TrieSnapshot<T> implements AutoCloseable {
+
+	private VersionedTrie<T> trie;
+	private VersionedTrie.Version<T> version;		// The pinned version, null once closed
+
+	TrieSnapshot(VersionedTrie<T> trie, VersionedTrie.Version<T> version) {
+		this.trie = trie;
+		this.version = version;
+	}
+
+	/**
+	 * Search the version for a specific word
+	 * @param word
+	 * @return Data 	- The Data-object stored in the word
+	 */
+	public T search(CharSequence word) {
+		assert word != null	: "Prefix is null";
+		assert word.length() != 0	: "prefix is empty";
+
+		VersionedTrie.Node<T> node = VersionedTrie.locate(root(), word);
+		return node == null ? null : node.data;
+	}
+
+	/**
+	 * Builds a list of words with the given Prefix, in alfabetical order
+	 * @param prefix
+	 * @return List  - A list of all the options
+	 */
+	public ArrayList<String> autocomplete(CharSequence prefix) {
+		ArrayList<String> words = new ArrayList<String>();
+
+		// Find the node, a prefix may end halfway an edge
+		VersionedTrie.Node<T> node = root();
+		StringBuilder builder = new StringBuilder(prefix);
+		int i = 0;
+		while(i < prefix.length()) {
+			int k = node.indexOf(prefix.charAt(i));
+			if(k < 0) {
+				return words;
+			}
+			String label = node.labels[k];
+			int common = VersionedTrie.commonPrefix(label, prefix, i);
+			if(i + common < prefix.length() && common < label.length()) {
+				return words;
+			}
+			builder.append(label, Math.min(label.length(), prefix.length() - i), label.length());
+			i += label.length();
+			node = node.children[k];
+		}
+
+		// Walk the subtree with a stack, the children are pushed last to first
+		ArrayDeque<VersionedTrie.Node<T>> stack = new ArrayDeque<VersionedTrie.Node<T>>();
+		ArrayDeque<String> prefixes = new ArrayDeque<String>();
+		stack.push(node);
+		prefixes.push(builder.toString());
+		while(!stack.isEmpty()) {
+			node = stack.pop();
+			String word = prefixes.pop();
+			if(node.data != null) {
+				words.add(word);
+			}
+			for(int k = node.children.length - 1; k >= 0; k--) {
+				stack.push(node.children[k]);
+				prefixes.push(word + node.labels[k]);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Gives back the amount of words in the version
+	 * @return int - The word count
+	 */
+	public int size() {
+		check();
+		return version.size;
+	}
+
+	/**
+	 * Gives back the number of the pinned version
+	 * @return long - The amount of batches committed before it
+	 */
+	public long getVersion() {
+		check();
+		return version.number;
+	}
+
+	/**
+	 * Releases the version. The snapshot can't be used after this.
+	 */
+	@Override
+	public void close() {
+		if(version != null) {
+			trie.unpin(version);
+			version = null;
+		}
+	}
+
+	private VersionedTrie.Node<T> root() {
+		check();
+		return version.root;
+	}
+
+	private void check() {
+		if(version == null) {
+			throw new IllegalStateException("Snapshot is closed");
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package nl.saxion.dna;
+
+import java.util.ArrayDeque;
+
+/**
+ * The shape of a Trie at one moment: how many nodes and words it has, how
+ * deep and how wide it is and how many characters the edge labels hold.
+ * The tree is walked with a stack of its own, so deep tries are no problem.
+ *
+ * @author Idmon & Emre
+ */
+public class TrieStatistics {
+
+	private long nodes;								// Nodes, without the root-node
+	private long words;								// Nodes that are a word
+	private long innerNodes;						// Nodes with children, with the root-node
+	private long edges;								// Children of all nodes together
+	private long labelCharacters;					// Characters of all edge labels
+	private int maxDepth;							// Characters of the longest word
+
+	/**
+	 * Walks the tree under a node
+	 * @param root - The root-node of the Trie
+	 */
+	TrieStatistics(TrieNode<?> root) {
+		ArrayDeque<TrieNode<?>> stack = new ArrayDeque<TrieNode<?>>();
+		ArrayDeque<Integer> depths = new ArrayDeque<Integer>();
+		stack.push(root);
+		depths.push(0);
+		while(!stack.isEmpty()) {
+			TrieNode<?> node = stack.pop();
+			int depth = depths.pop() + node.getLabel().length();
+			if(node != root) {
+				nodes++;
+				labelCharacters += 1 + node.getCharacters().length();
+			}
+			if(node.isWord()) {
+				words++;
+				maxDepth = Math.max(maxDepth, depth);
+			}
+			int children = node.getChildIndex().size();
+			if(children > 0) {
+				innerNodes++;
+				edges += children;
+				for(TrieNode<?> child : node.getChildIndex()) {
+					stack.push(child);
+					depths.push(depth);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gives back the amount of nodes, without the root-node
+	 * @return long - The node count
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Gives back the amount of words
+	 * @return long - The word count
+	 */
+	public long getWords() {
+		return words;
+	}
+
+	/**
+	 * Gives back the length of the longest word
+	 * @return int - The maximum depth in characters
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Gives back the average amount of children of the nodes that have any
+	 * @return double - The average fan-out, 0 for an empty Trie
+	 */
+	public double getAverageFanOut() {
+		return innerNodes == 0 ? 0 : (double) edges / innerNodes;
+	}
+
+	/**
+	 * Gives back the characters in all edge labels. The labels only hold the
+	 * letters a-z, so that is also the bytes they take in a compact String.
+	 * @return long - The edge label bytes
+	 */
+	public long getLabelBytes() {
+		return labelCharacters;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("nodes=%d words=%d maxDepth=%d fanOut=%.2f labelBytes=%d",
+				nodes, words, maxDepth, getAverageFanOut(), labelCharacters);
+	}
+}
@@ -0,0 +1,482 @@
+package nl.saxion.dna;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * A persistent variant of the reduced Trie: every committed batch of changes
+ * is a new version, and readers query a version of their own.
+ *
+ * A version is an immutable tree. A batch never changes the nodes of a
+ * version, it copies the nodes on the paths it changes (path copying) and the
+ * new tree shares every other subtree with the previous version. A node that
+ * has been copied belongs to the batch, so further changes in the same batch
+ * change that copy in place: a batch copies each node at most once, however
+ * many words it inserts or deletes under it. When the batch commits, its nodes
+ * become part of the new version and are never changed again.
+ *
+ * Readers call snapshot() to pin the current version and query it as long as
+ * they want, without locks and without seeing any batch that commits in the
+ * meantime. The trie itself only holds on to the current version, so the nodes
+ * of an old version are reclaimed by the garbage collector as soon as the last
+ * snapshot of it is closed.
+ *
+ * One batch can be open at a time, writers wait for each other. Like the Trie,
+ * only words made of the letters a-z and A-Z are stored, in lowercase.
+ * Data-objects of a version are never changed: inserting an existing word
+ * stores a new Data-object with both positions.
+ *
+ * @author Idmon & Emre
+ * @param <T> Data structure
+ */
+public class VersionedTrie<T> {
+
+	// Counting the snapshots of a version, a count of zero removes the version
+	private static final BiFunction<Integer, Integer, Integer> PIN = new BiFunction<Integer, Integer, Integer>() {
+		public Integer apply(Integer count, Integer one) {
+			return count + 1;
+		}
+	};
+	private static final BiFunction<Long, Integer, Integer> UNPIN = new BiFunction<Long, Integer, Integer>() {
+		public Integer apply(Long number, Integer count) {
+			return count == 1 ? null : count - 1;
+		}
+	};
+
+	private volatile Version<T> current;			// The last committed version
+	private ReentrantLock writer;					// Held by the open batch
+	private ConcurrentHashMap<Long, Integer> pins;	// Per version: its open snapshots
+
+	public VersionedTrie() {
+		current = new Version<T>(0, new Node<T>(null, new String[0], VersionedTrie.<T>nodes(0), null), 0);
+		writer = new ReentrantLock();
+		pins = new ConcurrentHashMap<Long, Integer>();
+	}
+
+	/**
+	 * Starts a batch of changes. Waits until the open batch, if any, is done.
+	 * The batch has to be committed or aborted on the same thread, also when
+	 * a change throws: abort it in a catch or finally, or every other writer
+	 * waits forever.
+	 * @return Batch - The batch, on top of the current version
+	 */
+	public Batch begin() {
+		writer.lock();
+		return new Batch(current);
+	}
+
+	/**
+	 * Adds a word as a batch of its own
+	 * @param word 	- The word that needs to be added to the trie
+	 * @param data 	- The Data-object that needs to be stored
+	 */
+	public void insert(String word, T data) {
+		Batch batch = begin();
+		try {
+			batch.insert(word, data);
+		} catch(RuntimeException | Error e) {
+			batch.abort();
+			throw e;
+		}
+		batch.commit();
+	}
+
+	/**
+	 * Deletes a word as a batch of its own
+	 * @param word
+	 * @return boolean - True if the word was in the trie
+	 */
+	public boolean delete(CharSequence word) {
+		Batch batch = begin();
+		boolean deleted;
+		try {
+			deleted = batch.delete(word);
+		} catch(RuntimeException | Error e) {
+			batch.abort();
+			throw e;
+		}
+		batch.commit();
+		return deleted;
+	}
+
+	/**
+	 * Pins the current version. It stays as it is until the snapshot is closed.
+	 * @return TrieSnapshot - A read-only view on the current version
+	 */
+	public TrieSnapshot<T> snapshot() {
+		Version<T> version = current;
+		pins.merge(version.number, 1, PIN);
+		return new TrieSnapshot<T>(this, version);
+	}
+
+	/**
+	 * Releases a version that was pinned by a snapshot
+	 */
+	void unpin(Version<T> version) {
+		pins.computeIfPresent(version.number, UNPIN);
+	}
+
+	/**
+	 * Gives back the number of the current version
+	 * @return long - The amount of batches committed
+	 */
+	public long getVersion() {
+		return current.number;
+	}
+
+	/**
+	 * Gives back the amount of words in the current version
+	 * @return int - The word count
+	 */
+	public int size() {
+		return current.size;
+	}
+
+	/**
+	 * Gives back the amount of versions with an open snapshot
+	 * @return int - Versions that can't be reclaimed yet, besides the current one
+	 */
+	public int getPinnedVersions() {
+		return pins.size();
+	}
+
+	/**
+	 * Gives back the oldest version that still has an open snapshot
+	 * @return long - Its number, the current version if nothing is pinned
+	 */
+	public long getOldestPinnedVersion() {
+		long oldest = current.number;
+		for(long number : pins.keySet()) {
+			oldest = Math.min(oldest, number);
+		}
+		return oldest;
+	}
+
+	/**
+	 * A batch of changes that becomes a new version when it commits.
+	 * Until then the changes are only visible to the batch itself.
+	 * It holds the writer lock until commit() or abort(), so whoever calls
+	 * begin() has to make sure one of them is called, also when a change throws.
+	 */
+	public class Batch {
+		private Version<T> base;					// The version the batch started from
+		private Node<T> root;						// The root of the new tree
+		private int size;							// Words in the new tree
+		private Object owner;						// Marks the nodes this batch may change, null when done
+
+		private Batch(Version<T> base) {
+			this.base = base;
+			this.root = base.root;
+			this.size = base.size;
+			this.owner = new Object();
+		}
+
+		/**
+		 * Adds a new word
+		 * @param word 	- The word that needs to be added to the trie
+		 * @param data 	- The Data-object that needs to be stored
+		 */
+		public void insert(String word, T data) {
+			assert word != null	: "Word is null";
+			assert word != ""	: "Word is empty";
+			assert data != null	: "Data object is null";
+			check();
+
+			if(word == null || word.isEmpty() || data == null || !Trie.isLetters(word)) {
+				return;
+			}
+			String key = Trie.hasUpperCase(word) ? word.toLowerCase() : word;
+
+			root = editable(root);
+			Node<T> node = root;
+			int i = 0;
+			while(i < key.length()) {
+				// No edge starts with the next character, add a new leaf
+				int k = node.indexOf(key.charAt(i));
+				if(k < 0) {
+					node.addEdge(-(k + 1), key.substring(i), new Node<T>(data, new String[0], VersionedTrie.<T>nodes(0), owner));
+					size++;
+					return;
+				}
+
+				// The word leaves the edge halfway, split it with a new node in between
+				String label = node.labels[k];
+				int common = commonPrefix(label, key, i);
+				if(common < label.length()) {
+					Node<T> middle = new Node<T>(null, new String[] { label.substring(common) }, VersionedTrie.<T>nodes(node.children[k]), owner);
+					node.labels[k] = label.substring(0, common);
+					node.children[k] = middle;
+					node = middle;
+				} else {
+					node.children[k] = editable(node.children[k]);
+					node = node.children[k];
+				}
+				i += common;
+			}
+
+			// The word ends in this node
+			if(node.data == null) {
+				node.data = data;
+				size++;
+			} else {
+				combine(node, data);
+			}
+		}
+
+		/**
+		 * Deletes a word
+		 * @param word
+		 * @return boolean - True if the word was in the trie
+		 */
+		public boolean delete(CharSequence word) {
+			assert word != null	: "Prefix is null";
+			assert word.length() != 0	: "prefix is empty";
+			check();
+
+			Node<T> found = locate(root, word);
+			if(found == null || found.data == null) {
+				return false;
+			}
+
+			// Copy the path, merging may continue upwards
+			Node<T>[] path = VersionedTrie.<T>nodes(word.length() + 1);
+			int[] edges = new int[word.length()];
+			root = editable(root);
+			path[0] = root;
+			int depth = 0;
+			int i = 0;
+			while(i < word.length()) {
+				Node<T> node = path[depth];
+				int k = node.indexOf(word.charAt(i));
+				i += node.labels[k].length();
+				node.children[k] = editable(node.children[k]);
+				edges[depth] = k;
+				path[++depth] = node.children[k];
+			}
+			path[depth].data = null;
+			size--;
+
+			// A node without data and with one child or less has to go
+			for(int level = depth; level > 0; level--) {
+				Node<T> node = path[level];
+				Node<T> parent = path[level - 1];
+				int k = edges[level - 1];
+				if(node.data != null || node.children.length > 1) {
+					break;
+				}
+				if(node.children.length == 1) {
+					// Merge the node into the edge of its parent
+					parent.labels[k] = parent.labels[k] + node.labels[0];
+					parent.children[k] = node.children[0];
+					break;
+				}
+				parent.removeEdge(k);
+			}
+			return true;
+		}
+
+		/**
+		 * Search the new tree, with the changes of this batch
+		 * @param word
+		 * @return Data 	- The Data-object stored in the word
+		 */
+		public T search(CharSequence word) {
+			check();
+			Node<T> node = locate(root, word);
+			return node == null ? null : node.data;
+		}
+
+		/**
+		 * Publishes the changes as a new version and ends the batch
+		 * @return long - The number of the new version
+		 */
+		public long commit() {
+			check();
+			owner = null;
+			try {
+				if(root != base.root) {
+					current = new Version<T>(base.number + 1, root, size);
+				}
+				return current.number;
+			} finally {
+				writer.unlock();
+			}
+		}
+
+		/**
+		 * Throws the changes away and ends the batch
+		 */
+		public void abort() {
+			check();
+			owner = null;
+			writer.unlock();
+		}
+
+		private void check() {
+			if(owner == null) {
+				throw new IllegalStateException("Batch is done");
+			}
+		}
+
+		/**
+		 * Gives back a node this batch may change: the node itself if the batch
+		 * made it, otherwise a copy
+		 */
+		private Node<T> editable(Node<T> node) {
+			if(node.owner == owner) {
+				return node;
+			}
+			return new Node<T>(node.data, node.labels.clone(), node.children.clone(), owner);
+		}
+
+		/**
+		 * Adds the positions of the new data to the word. Data-objects of a
+		 * version are copied first, one made by this batch is added to.
+		 */
+		@SuppressWarnings("unchecked")
+		private void combine(Node<T> node, T data) {
+			if(node.data instanceof Data && data instanceof Data) {
+				if(node.mergedBy == owner) {
+					((Data) node.data).addAll((Data) data);
+				} else {
+					node.data = (T) Data.merge((Data) node.data, (Data) data);
+					node.mergedBy = owner;
+				}
+			} else {
+				node.data = data;
+			}
+		}
+	}
+
+	/**
+	 * Walks down to the node spelling the word
+	 */
+	static <T> Node<T> locate(Node<T> node, CharSequence word) {
+		int i = 0;
+		while(i < word.length()) {
+			int k = node.indexOf(word.charAt(i));
+			if(k < 0 || !matches(node.labels[k], word, i)) {
+				return null;
+			}
+			i += node.labels[k].length();
+			node = node.children[k];
+		}
+		return node;
+	}
+
+	/**
+	 * Counts the characters the label has in common with the key from index i
+	 */
+	static int commonPrefix(String label, CharSequence key, int i) {
+		int length = Math.min(label.length(), key.length() - i);
+		int common = 0;
+		while(common < length && label.charAt(common) == key.charAt(i + common)) {
+			common++;
+		}
+		return common;
+	}
+
+	/**
+	 * Checks if the whole label matches the key from index i
+	 */
+	private static boolean matches(String label, CharSequence key, int i) {
+		return label.length() <= key.length() - i && commonPrefix(label, key, i) == label.length();
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T> Node<T>[] nodes(int length) {
+		return (Node<T>[]) new Node[length];
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T> Node<T>[] nodes(Node<T> node) {
+		Node<T>[] nodes = (Node<T>[]) new Node[1];
+		nodes[0] = node;
+		return nodes;
+	}
+
+	/**
+	 * A committed tree: its root, its number and how many words it holds
+	 */
+	static final class Version<T> {
+		final long number;
+		final Node<T> root;
+		final int size;
+
+		Version(long number, Node<T> root, int size) {
+			this.number = number;
+			this.root = root;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * A node of a tree. It can only be changed by the batch that owns it,
+	 * once that batch is done it stays as it is.
+	 */
+	static final class Node<T> {
+		T data;									// The data, null if it is no word
+		String[] labels;						// Characters on the edge to each child
+		Node<T>[] children;						// The children, sorted on their starting character
+		Object owner;							// The batch that may change this node
+		Object mergedBy;						// The batch that made the data, if it did
+
+		Node(T data, String[] labels, Node<T>[] children, Object owner) {
+			this.data = data;
+			this.labels = labels;
+			this.children = children;
+			this.owner = owner;
+		}
+
+		/**
+		 * Binary search on the starting characters of the edges
+		 */
+		int indexOf(char c) {
+			int low = 0;
+			int high = labels.length - 1;
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				char key = labels[mid].charAt(0);
+				if(key < c) {
+					low = mid + 1;
+				} else if(key > c) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
+		/**
+		 * Adds an edge at spot k
+		 */
+		void addEdge(int k, String label, Node<T> child) {
+			String[] newLabels = new String[labels.length + 1];
+			Node<T>[] newChildren = nodes(labels.length + 1);
+			System.arraycopy(labels, 0, newLabels, 0, k);
+			System.arraycopy(children, 0, newChildren, 0, k);
+			newLabels[k] = label;
+			newChildren[k] = child;
+			System.arraycopy(labels, k, newLabels, k + 1, labels.length - k);
+			System.arraycopy(children, k, newChildren, k + 1, labels.length - k);
+			labels = newLabels;
+			children = newChildren;
+		}
+
+		/**
+		 * Removes edge k
+		 */
+		void removeEdge(int k) {
+			String[] newLabels = new String[labels.length - 1];
+			Node<T>[] newChildren = nodes(labels.length - 1);
+			System.arraycopy(labels, 0, newLabels, 0, k);
+			System.arraycopy(children, 0, newChildren, 0, k);
+			System.arraycopy(labels, k + 1, newLabels, k, labels.length - k - 1);
+			System.arraycopy(children, k + 1, newChildren, k, labels.length - k - 1);
+			labels = newLabels;
+			children = newChildren;
+		}
+	}
+}
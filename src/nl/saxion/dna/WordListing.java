@@ -0,0 +1,274 @@
+package nl.saxion.dna;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * All the words of a trie in alfabetical order, with the depth of their
+ * node and their frequency.
+ *
+ * The words are collected by a fork-join walk: the subtrees near the root
+ * are walked in parallel and their parts are put after each other in the
+ * order of the children. The children are sorted, so the words come out in
+ * alfabetical order without sorting or maps. The frequency order is made from
+ * that with a counting sort, or a sort on a key when one word is far more
+ * frequent than there are words; both keep words that are just as frequent
+ * in alfabetical order.
+ *
+ * @author Idmon & Emre
+ */
+public class WordListing {
+
+	private static final int SPLIT = 2;				// Levels below the root that are walked in parallel
+	private static ForkJoinPool pool;				// Shared by all listings
+
+	private String[] words;							// The words, alfabetical
+	private int[] depths;							// Per word: the depth of its node
+	private int[] frequencies;						// Per word: how often it occurs
+	private int size;								// Amount of words
+
+	private WordListing(int capacity) {
+		words = new String[Math.max(capacity, 4)];
+		depths = new int[words.length];
+		frequencies = new int[words.length];
+	}
+
+	/**
+	 * Collects the words under a node
+	 * @param root 				- The node to start from, usually the root of a trie
+	 * @return WordListing 		- The words under it
+	 */
+	public static <T> WordListing collect(TrieNode<T> root) {
+		return pool().invoke(new Walk<T>(root, root.toString(), 0, 0));
+	}
+
+	/**
+	 * Gives back the amount of words
+	 * @return int - The size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gives back a word
+	 * @param index 	- Index in alfabetical order
+	 * @return String 	- The word
+	 */
+	public String getWord(int index) {
+		return words[index];
+	}
+
+	/**
+	 * Gives back the depth of the node of a word
+	 * @param index 	- Index in alfabetical order
+	 * @return int 		- The depth, 1 for a child of the root
+	 */
+	public int getDepth(int index) {
+		return depths[index];
+	}
+
+	/**
+	 * Gives back the frequency of a word
+	 * @param index 	- Index in alfabetical order
+	 * @return int 		- How often it occurs
+	 */
+	public int getFrequency(int index) {
+		return frequencies[index];
+	}
+
+	/**
+	 * Sorts the words on frequency with a counting sort: count the words per
+	 * frequency, turn the counts into starting points and place every word.
+	 * The counts take an entry per frequency up to the highest one, which is at
+	 * most the total amount of positions. When that is far more than the amount
+	 * of words, for example with one very frequent word, the words are sorted
+	 * on a key of frequency and index instead.
+	 * @return int[] - Indexes of the words, most frequent first, alfabetical when just as frequent
+	 */
+	public int[] byFrequency() {
+		int max = 0;
+		for(int i = 0; i < size; i++) {
+			max = Math.max(max, frequencies[i]);
+		}
+		if(max / 4 > size) {
+			return byFrequencyKeys(max);
+		}
+		int[] start = new int[max + 2];
+		for(int i = 0; i < size; i++) {
+			start[max - frequencies[i] + 1]++;
+		}
+		for(int f = 1; f < start.length; f++) {
+			start[f] += start[f - 1];
+		}
+		int[] order = new int[size];
+		for(int i = 0; i < size; i++) {
+			order[start[max - frequencies[i]]++] = i;
+		}
+		return order;
+	}
+
+	/**
+	 * Sorts the words on frequency by sorting a long per word: the frequency
+	 * counted down from the highest in the upper half, the index in the lower
+	 * half, so words that are just as frequent stay alfabetical
+	 * @param max 		- The highest frequency
+	 * @return int[] 	- Indexes of the words, most frequent first
+	 */
+	private int[] byFrequencyKeys(int max) {
+		long[] keys = new long[size];
+		for(int i = 0; i < size; i++) {
+			keys[i] = (long) (max - frequencies[i]) << 32 | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[size];
+		for(int i = 0; i < size; i++) {
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+	/**
+	 * Prints every word with its depth, as "depth: word", in alfabetical order
+	 * @param out - Where to print to
+	 */
+	public void printAlfabetical(PrintStream out) {
+		StringBuilder builder = new StringBuilder(1 << 16);
+		for(int i = 0; i < size; i++) {
+			builder.append(depths[i]).append(": ").append(words[i]).append('\n');
+			flushIfFull(builder, out);
+		}
+		out.print(builder);
+		out.flush();
+	}
+
+	/**
+	 * Prints every word with its frequency, as "word: 3x", most frequent first
+	 * @param out - Where to print to
+	 */
+	public void printFrequency(PrintStream out) {
+		StringBuilder builder = new StringBuilder(1 << 16);
+		for(int i : byFrequency()) {
+			builder.append(words[i]).append(": ").append(frequencies[i]).append("x\n");
+			flushIfFull(builder, out);
+		}
+		out.print(builder);
+		out.flush();
+	}
+
+	private static void flushIfFull(StringBuilder builder, PrintStream out) {
+		if(builder.length() >= 1 << 16) {
+			out.print(builder);
+			builder.setLength(0);
+		}
+	}
+
+	private void add(String word, int depth, int frequency) {
+		if(size == words.length) {
+			grow(size * 2);
+		}
+		words[size] = word;
+		depths[size] = depth;
+		frequencies[size] = frequency;
+		size++;
+	}
+
+	/**
+	 * Puts the words of another listing after those of this one
+	 */
+	private void addAll(WordListing other) {
+		if(size + other.size > words.length) {
+			grow(Math.max(size + other.size, size * 2));
+		}
+		System.arraycopy(other.words, 0, words, size, other.size);
+		System.arraycopy(other.depths, 0, depths, size, other.size);
+		System.arraycopy(other.frequencies, 0, frequencies, size, other.size);
+		size += other.size;
+	}
+
+	private void grow(int capacity) {
+		String[] newWords = new String[capacity];
+		int[] newDepths = new int[capacity];
+		int[] newFrequencies = new int[capacity];
+		System.arraycopy(words, 0, newWords, 0, size);
+		System.arraycopy(depths, 0, newDepths, 0, size);
+		System.arraycopy(frequencies, 0, newFrequencies, 0, size);
+		words = newWords;
+		depths = newDepths;
+		frequencies = newFrequencies;
+	}
+
+	private static synchronized ForkJoinPool pool() {
+		if(pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+
+	/**
+	 * Collects the words under one node. Near the root every child gets its
+	 * own task, deeper down the subtree is walked in this task.
+	 */
+	private static class Walk<T> extends RecursiveTask<WordListing> {
+		private static final long serialVersionUID = 1L;
+
+		private TrieNode<T> node;
+		private String word;						// The word the node spells
+		private int depth;							// Depth of the node
+		private int level;							// Levels below the node the walk started at
+
+		private Walk(TrieNode<T> node, String word, int depth, int level) {
+			this.node = node;
+			this.word = word;
+			this.depth = depth;
+			this.level = level;
+		}
+
+		@Override
+		protected WordListing compute() {
+			if(level >= SPLIT) {
+				WordListing listing = new WordListing(16);
+				walk(node, new StringBuilder(word), depth, listing);
+				return listing;
+			}
+
+			ArrayList<Walk<T>> tasks = new ArrayList<Walk<T>>();
+			for(TrieNode<T> child : node.getChildIndex()) {
+				tasks.add(new Walk<T>(child, word + child.getLabel(), depth + 1, level + 1));
+			}
+			ForkJoinTask.invokeAll(tasks);
+
+			int capacity = node.isWord() ? 1 : 0;
+			for(Walk<T> task : tasks) {
+				capacity += task.getRawResult().size;
+			}
+			WordListing listing = new WordListing(capacity);
+			if(node.isWord()) {
+				listing.add(word, depth, node.getFrequency());
+			}
+			for(Walk<T> task : tasks) {
+				listing.addAll(task.getRawResult());
+			}
+			return listing;
+		}
+
+		/**
+		 * Walks a subtree in order: a node is a word before the words under it
+		 */
+		private void walk(TrieNode<T> node, StringBuilder builder, int depth, WordListing listing) {
+			if(node.isWord()) {
+				listing.add(builder.toString(), depth, node.getFrequency());
+			}
+			for(TrieNode<T> child : node.getChildIndex()) {
+				int length = builder.length();
+				builder.append(child.getStartCharacter()).append(child.getCharacters());
+				walk(child, builder, depth + 1, listing);
+				builder.setLength(length);
+			}
+		}
+	}
+}